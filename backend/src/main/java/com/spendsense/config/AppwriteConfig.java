@@ -1,6 +1,7 @@
 package com.spendsense.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,8 +10,10 @@ import org.springframework.web.client.RestTemplate;
 /**
  * Configures a RestTemplate pre-wired with Appwrite server authentication headers
  * (X-Appwrite-Project and X-Appwrite-Key) for all outgoing Appwrite Storage API calls.
+ * Only needed when Appwrite is the storage backend.
  */
 @Configuration
+@ConditionalOnProperty(name = "storage.backend", havingValue = "appwrite", matchIfMissing = true)
 public class AppwriteConfig {
 
     @Value("${appwrite.project-id}")
@@ -21,16 +24,20 @@ public class AppwriteConfig {
 
     /**
      * A RestTemplate that automatically attaches Appwrite authentication headers
-     * to every request. Injected into FileStorageService via @Qualifier.
+     * to every request. Injected into AppwriteStorageBackend via @Qualifier.
+     *
+     * Headers are set as defaults rather than by an interceptor: interceptors
+     * make RestTemplate buffer the whole request body, which would copy every
+     * uploaded receipt once more.
+     *
+     * Connections come from the pooled "appwrite" client (http.client.targets.appwrite).
      */
     @Bean("appwriteRestTemplate")
-    public RestTemplate appwriteRestTemplate(RestTemplateBuilder builder) {
+    public RestTemplate appwriteRestTemplate(RestTemplateBuilder builder, OutboundHttpClients httpClients) {
         return builder
-                .additionalInterceptors((request, body, execution) -> {
-                    request.getHeaders().set("X-Appwrite-Project", projectId);
-                    request.getHeaders().set("X-Appwrite-Key", apiKey);
-                    return execution.execute(request, body);
-                })
+                .requestFactory(() -> httpClients.requestFactory("appwrite"))
+                .defaultHeader("X-Appwrite-Project", projectId)
+                .defaultHeader("X-Appwrite-Key", apiKey)
                 .build();
     }
 }
@@ -24,6 +24,8 @@ import java.util.Map;
  * Cache strategy:
  * - Default TTL: 24 hours (analytics, budget caches, etc.)
  * - aiInsights: 48 hours (expensive Gemini call — persisted in DB + Redis)
+ * - aiPromptResults: 7 days (content-addressed Gemini answers, backed by the
+ * ai_prompt_results table)
  *
  * For local dev: docker run -d -p 6379:6379 redis:alpine
  * For prod: use Upstash Redis (set REDIS_HOST, REDIS_PORT, REDIS_PASSWORD,
@@ -35,6 +37,7 @@ public class CacheConfig {
 
     private static final Duration DEFAULT_TTL = Duration.ofHours(24);
     private static final Duration AI_INSIGHTS_TTL = Duration.ofHours(48);
+    private static final Duration AI_PROMPT_RESULTS_TTL = Duration.ofDays(7);
 
     @Bean
     public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
@@ -50,7 +53,7 @@ public class CacheConfig {
         RedisCacheConfiguration base = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(DEFAULT_TTL)
                 .disableCachingNullValues()
-                .prefixCacheNameWith("spendsense:v2:") // Bust old poisoned cache entries
+                .prefixCacheNameWith("spendsense:v3:") // Bust old entries (v3: insights gained budgetRecommendations)
                 .serializeKeysWith(
                         RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(
@@ -60,6 +63,8 @@ public class CacheConfig {
         Map<String, RedisCacheConfiguration> cacheConfigs = new HashMap<>();
         cacheConfigs.put("aiInsights",
                 base.entryTtl(AI_INSIGHTS_TTL));
+        cacheConfigs.put("aiPromptResults",
+                base.entryTtl(AI_PROMPT_RESULTS_TTL));
         cacheConfigs.put("analyticsCache",
                 base.entryTtl(DEFAULT_TTL));
 
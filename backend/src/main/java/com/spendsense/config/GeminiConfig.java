@@ -12,6 +12,8 @@ import org.springframework.web.reactive.function.client.WebClient;
 import reactor.netty.http.client.HttpClient;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -28,6 +30,71 @@ public class GeminiConfig {
     private String visionModel;
     private int timeoutSeconds = 30;
     private int maxRetries = 3;
+    private Resilience resilience = new Resilience();
+    private Routing routing = new Routing();
+    private Hedging hedging = new Hedging();
+    /** USD list price per model name, used for the gemini.cost estimate */
+    private Map<String, Pricing> pricing = new HashMap<>();
+
+    /**
+     * Limits applied around every Gemini call by GeminiCallGuard
+     */
+    @Data
+    public static class Resilience {
+        /** Bulkhead: hard cap on concurrent Gemini calls on this node */
+        private int maxConcurrency = 16;
+        /** Starting point for the adaptive limit, which then moves between 1 and maxConcurrency */
+        private int initialConcurrency = 4;
+        /** Circuit breaker: calls tracked in the sliding window */
+        private int slidingWindowSize = 20;
+        /** Circuit breaker: calls needed in the window before the failure rate is evaluated */
+        private int minimumCalls = 10;
+        /** Circuit breaker: failure percentage that opens the circuit */
+        private int failureRateThreshold = 50;
+        /** Circuit breaker: how long the circuit stays open before trial calls */
+        private int openSeconds = 30;
+        /** Circuit breaker: trial calls allowed while half-open */
+        private int halfOpenCalls = 3;
+    }
+
+    /**
+     * Model routing by input size (GeminiModelRouter). Inputs up to the light
+     * thresholds go to lightModel / lightVisionModel; larger ones to model /
+     * visionModel. Set the light models equal to the heavy ones to disable routing.
+     */
+    @Data
+    public static class Routing {
+        private String lightModel = "gemini-2.5-flash-lite";
+        private String lightVisionModel = "gemini-2.5-flash-lite";
+        private int lightMaxPromptChars = 4000;
+        private int lightMaxImageBytes = 1024 * 1024;
+    }
+
+    /**
+     * Hedged requests for idempotent reads: a duplicate is sent once the primary
+     * has been outstanding longer than the model's observed p95.
+     */
+    @Data
+    public static class Hedging {
+        private boolean enabled = true;
+        /** Hedges allowed as a percentage of hedgeable requests */
+        private int budgetPercent = 10;
+        /** Hedges that may be spent in a burst before the budget has to refill */
+        private int maxBurst = 5;
+        /** Successful calls observed per model before hedging starts */
+        private int minSamples = 20;
+        /** Never hedge sooner than this, whatever the p95 says */
+        private long minDelayMs = 300;
+    }
+
+    /**
+     * Per-million-token prices; thinking tokens are billed as output
+     */
+    @Data
+    public static class Pricing {
+        private double inputPerMillion;
+        private double outputPerMillion;
+    }
 
     /**
      * WebClient configured for Gemini API calls with timeouts and retry logic
@@ -0,0 +1,47 @@
+package com.spendsense.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connection pools for outbound HTTP calls made with RestTemplate (Appwrite
+ * Storage, Resend). Gemini goes through its own Reactor Netty client (GeminiConfig).
+ *
+ * Each target ("appwrite", "resend") gets its own pooled Apache HttpClient, so a
+ * burst of storage traffic cannot take the connections email needs. Targets not
+ * listed under http.client.targets use the defaults below.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "http.client")
+@Data
+public class HttpClientConfig {
+
+    private Map<String, Target> targets = new HashMap<>();
+
+    @Data
+    public static class Target {
+        /** Pooled connections to the target; each target is a single host */
+        private int maxConnections = 20;
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        /** Socket inactivity while waiting for (more of) the response */
+        private Duration readTimeout = Duration.ofSeconds(30);
+        /** Wait for a free pooled connection before failing the call */
+        private Duration poolTimeout = Duration.ofSeconds(10);
+        /** Idle connections are closed after this long */
+        private Duration idleTimeout = Duration.ofMinutes(1);
+        /** Connections are not reused past this age, so DNS changes are picked up */
+        private Duration timeToLive = Duration.ofMinutes(5);
+    }
+
+    @Bean
+    public OutboundHttpClients outboundHttpClients(MeterRegistry meterRegistry) {
+        return new OutboundHttpClients(this, meterRegistry);
+    }
+}
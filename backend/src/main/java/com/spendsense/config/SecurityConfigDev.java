@@ -1,6 +1,7 @@
 package com.spendsense.config;
 
 import com.spendsense.security.CustomJwtGrantedAuthoritiesConverter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -51,8 +52,11 @@ public class SecurityConfigDev {
                                                                 .jwtAuthenticationConverter(
                                                                                 jwtAuthenticationConverter())))
                                 .authorizeHttpRequests(auth -> auth
+                                                // Async (CompletableFuture) responses re-dispatch after the original request
+                                                // was already authorised; the re-dispatch carries no bearer token of its own
+                                                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                                                 .requestMatchers("/health").permitAll()
-                                                .requestMatchers("/actuator/health").permitAll()
+                                                .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
                                                 .requestMatchers("/webhooks/**").permitAll()
                                                 // Export download links are sent via email and opened in browser
                                                 .requestMatchers("/export/download/**").permitAll()
@@ -91,7 +95,8 @@ public class SecurityConfigDev {
                                 "https://spendsense.com"));
                 configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
                 configuration.setAllowedHeaders(List.of("*"));
-                configuration.setExposedHeaders(Arrays.asList("X-RateLimit-Remaining", "Authorization"));
+                configuration.setExposedHeaders(Arrays.asList("X-RateLimit-Remaining", "Authorization",
+                                "Accept-Ranges", "Content-Range", "ETag"));
                 configuration.setAllowCredentials(true);
                 configuration.setMaxAge(3600L);
 
@@ -7,11 +7,15 @@ import com.spendsense.service.ai.AiInsightsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/ai/insights")
@@ -24,33 +28,43 @@ public class AiInsightsController {
 
     @GetMapping
     @Operation(summary = "Get AI spending insights", description = "Returns cached (Redis 48h → DB 48h) insights, or generates fresh from Gemini")
-    public ResponseEntity<SpendingInsightResponse> getSpendingInsights(Authentication authentication) {
+    public CompletableFuture<ResponseEntity<SpendingInsightResponse>> getSpendingInsights(Authentication authentication) {
         User user = userPrincipal.getCurrentUser(authentication);
-        SpendingInsightResponse insights = aiInsightsService.generateSpendingInsights(user.getId());
-        return ResponseEntity.ok(insights);
+        return aiInsightsService.generateSpendingInsightsAsync(user.getId())
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream AI spending insights", description = "Server-Sent Events: 'summary' events carry summary text as Gemini produces it, the final 'insights' event carries the full response")
+    public Flux<ServerSentEvent<Object>> streamSpendingInsights(Authentication authentication) {
+        User user = userPrincipal.getCurrentUser(authentication);
+        return aiInsightsService.streamSpendingInsights(user.getId())
+                .map(event -> event.isComplete()
+                        ? ServerSentEvent.<Object>builder(event.insights()).event("insights").build()
+                        : ServerSentEvent.<Object>builder(event.summaryDelta()).event("summary").build());
     }
 
     @PostMapping("/refresh")
     @Operation(summary = "Refresh AI spending insights", description = "Evicts Redis cache + deletes DB row, then regenerates fresh insights from Gemini")
-    public ResponseEntity<SpendingInsightResponse> refreshSpendingInsights(Authentication authentication) {
+    public CompletableFuture<ResponseEntity<SpendingInsightResponse>> refreshSpendingInsights(Authentication authentication) {
         User user = userPrincipal.getCurrentUser(authentication);
-        SpendingInsightResponse insights = aiInsightsService.refreshSpendingInsights(user.getId());
-        return ResponseEntity.ok(insights);
+        return aiInsightsService.refreshSpendingInsightsAsync(user.getId())
+                .thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/anomalies")
     @Operation(summary = "Detect spending anomalies", description = "Use AI to detect unusual spending patterns")
-    public ResponseEntity<List<String>> detectAnomalies(Authentication authentication) {
+    public CompletableFuture<ResponseEntity<List<String>>> detectAnomalies(Authentication authentication) {
         User user = userPrincipal.getCurrentUser(authentication);
-        List<String> anomalies = aiInsightsService.detectAnomalies(user.getId());
-        return ResponseEntity.ok(anomalies);
+        return aiInsightsService.detectAnomaliesAsync(user.getId())
+                .thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/recommendations")
     @Operation(summary = "Get budget recommendations", description = "Get AI-generated budget recommendations based on spending patterns")
-    public ResponseEntity<List<String>> getBudgetRecommendations(Authentication authentication) {
+    public CompletableFuture<ResponseEntity<List<String>>> getBudgetRecommendations(Authentication authentication) {
         User user = userPrincipal.getCurrentUser(authentication);
-        List<String> recommendations = aiInsightsService.generateBudgetRecommendations(user.getId());
-        return ResponseEntity.ok(recommendations);
+        return aiInsightsService.generateBudgetRecommendationsAsync(user.getId())
+                .thenApply(ResponseEntity::ok);
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.spendsense.controller;
 
+import com.spendsense.exception.ResourceNotFoundException;
+import com.spendsense.model.ExportFile;
 import com.spendsense.model.User;
 import com.spendsense.security.UserPrincipal;
 import com.spendsense.service.ExportService;
@@ -9,13 +11,17 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/export")
@@ -76,17 +82,30 @@ public class ExportController {
 
         @GetMapping("/download/{filename}")
         @Operation(summary = "Download exported file", description = "Download a previously generated export file sent via email.")
-        public ResponseEntity<byte[]> downloadExport(
-                        @PathVariable String filename) {
+        public ResponseEntity<StreamingResponseBody> downloadExport(
+                        @PathVariable String filename,
+                        WebRequest webRequest) {
 
                 // No auth required — link is sent via email and opened in browser without a Bearer token.
                 // The filename is a timestamped UUID-based name, and files expire after 24 h.
-                byte[] data = fileStorageService.getExportBytes(filename);
-                String contentType = filename.endsWith(".pdf") ? "application/pdf" : "text/csv";
+                // Unknown or expired exports are a 404 before any caching header or 304 is sent.
+                ExportFile export = fileStorageService.getExport(filename)
+                                .filter(file -> file.getExpiresAt() == null
+                                                || file.getExpiresAt().isAfter(LocalDateTime.now()))
+                                .orElseThrow(() -> new ResourceNotFoundException("Export not found or expired"));
+
+                // An export never changes under its name, so a re-opened link revalidates to a 304.
+                if (webRequest.checkNotModified("\"" + filename + "\"")) {
+                        return null;
+                }
+                String contentType = export.getMimeType() != null ? export.getMimeType()
+                                : filename.endsWith(".pdf") ? "application/pdf" : "text/csv";
 
                 return ResponseEntity.ok()
                                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
                                 .contentType(MediaType.parseMediaType(contentType))
-                                .body(data);
+                                .cacheControl(CacheControl.maxAge(24, TimeUnit.HOURS).cachePrivate().immutable())
+                                .contentLength(export.getSizeBytes())
+                                .body(out -> fileStorageService.streamExport(filename, out));
         }
 }
@@ -1,20 +1,37 @@
 package com.spendsense.controller;
 
-import com.spendsense.dto.response.ReceiptScanResponse;
+import com.spendsense.dto.response.ReceiptScanBatchResponse;
+import com.spendsense.dto.response.ReceiptScanJobResponse;
 import com.spendsense.exception.BadRequestException;
+import com.spendsense.model.Receipt;
 import com.spendsense.model.User;
 import com.spendsense.security.UserPrincipal;
-import com.spendsense.service.ai.ReceiptScanningService;
+import com.spendsense.service.ai.ReceiptScanBatchService;
+import com.spendsense.service.ai.ReceiptScanJobService;
 import com.spendsense.service.FileStorageService;
+import com.spendsense.service.storage.ResourceRange;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 
 @RestController
@@ -22,15 +39,23 @@ import org.springframework.web.multipart.MultipartFile;
 @RequiredArgsConstructor
 @Tag(name = "Receipts", description = "AI-powered receipt scanning and management")
 public class ReceiptController {
+
+    /** Receipts are private to their owner but never change once stored */
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS)
+            .cachePrivate()
+            .immutable();
     
-    private final ReceiptScanningService receiptScanningService;
+    private final ReceiptScanJobService receiptScanJobService;
+    private final ReceiptScanBatchService receiptScanBatchService;
     private final FileStorageService fileStorageService;
     private final UserPrincipal userPrincipal;
     
     @PostMapping(value = "/scan", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "Scan receipt", 
-               description = "Upload a receipt image and extract transaction details using AI")
-    public ResponseEntity<ReceiptScanResponse> scanReceipt(
+               description = "Upload a receipt image and queue AI extraction of its transaction details. " +
+                       "Returns 202 with a job id; poll /receipts/scan/jobs/{jobId} or stream its /events. " +
+                       "A re-upload of an already scanned receipt returns the earlier job (200 once finished)")
+    public ResponseEntity<ReceiptScanJobResponse> scanReceipt(
             @RequestParam("file") MultipartFile file,
             Authentication authentication) {
 
@@ -51,28 +76,158 @@ public class ReceiptController {
         }
 
         User user = userPrincipal.getCurrentUser(authentication);
-        ReceiptScanResponse response = receiptScanningService.scanReceipt(file, user.getId());
-        
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        ReceiptScanJobResponse job = receiptScanJobService.submit(file, user.getId());
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/jobs/{jobId}")
+                .buildAndExpand(job.getJobId())
+                .toUri();
+        // A re-upload of an already scanned receipt is answered at once
+        return ResponseEntity.status(job.isFinished() ? HttpStatus.OK : HttpStatus.ACCEPTED)
+                .location(location)
+                .body(job);
+    }
+
+    @GetMapping("/scan/jobs/{jobId}")
+    @Operation(summary = "Get receipt scan job",
+               description = "Current state of a receipt scan; result is set once status is COMPLETED")
+    public ResponseEntity<ReceiptScanJobResponse> getScanJob(
+            @PathVariable UUID jobId,
+            Authentication authentication) {
+
+        User user = userPrincipal.getCurrentUser(authentication);
+        return ResponseEntity.ok(receiptScanJobService.getJob(jobId, user.getId()));
+    }
+
+    @GetMapping(value = "/scan/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream receipt scan job",
+               description = "Server-Sent Events: a 'status' event on every state change, ending with COMPLETED or FAILED")
+    public Flux<ServerSentEvent<ReceiptScanJobResponse>> streamScanJob(
+            @PathVariable UUID jobId,
+            Authentication authentication) {
+
+        User user = userPrincipal.getCurrentUser(authentication);
+        return receiptScanJobService.streamJob(jobId, user.getId())
+                .map(job -> ServerSentEvent.builder(job).event("status").build());
     }
     
+    @PostMapping(value = "/scan/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Scan a batch of receipts",
+               description = "Upload several receipt images and/or ZIP archives of them. Every receipt is queued " +
+                       "as its own scan job; returns 202 with the batch. Poll /receipts/scan/batches/{batchId} " +
+                       "or stream its /events for per-receipt results")
+    public ResponseEntity<ReceiptScanBatchResponse> scanReceiptBatch(
+            @RequestParam("files") List<MultipartFile> files,
+            Authentication authentication) {
+
+        if (files == null || files.isEmpty()) {
+            throw new BadRequestException("No files uploaded");
+        }
+
+        User user = userPrincipal.getCurrentUser(authentication);
+        ReceiptScanBatchResponse batch = receiptScanBatchService.submit(files, user.getId());
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/receipts/scan/batches/{batchId}")
+                .buildAndExpand(batch.getBatchId())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(batch);
+    }
+
+    @GetMapping("/scan/batches/{batchId}")
+    @Operation(summary = "Get receipt scan batch",
+               description = "State of every receipt in a batch, in upload order")
+    public ResponseEntity<ReceiptScanBatchResponse> getScanBatch(
+            @PathVariable UUID batchId,
+            Authentication authentication) {
+
+        User user = userPrincipal.getCurrentUser(authentication);
+        return ResponseEntity.ok(receiptScanBatchService.getBatch(batchId, user.getId()));
+    }
+
+    @GetMapping(value = "/scan/batches/{batchId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream receipt scan batch",
+               description = "Server-Sent Events: a 'receipt' event as each receipt finishes, then a final 'batch' event")
+    public Flux<ServerSentEvent<Object>> streamScanBatch(
+            @PathVariable UUID batchId,
+            Authentication authentication) {
+
+        User user = userPrincipal.getCurrentUser(authentication);
+        return receiptScanBatchService.streamBatch(batchId, user.getId())
+                .map(event -> event.isComplete()
+                        ? ServerSentEvent.<Object>builder(event.batch()).event("batch").build()
+                        : ServerSentEvent.<Object>builder(event.item()).event("receipt").build());
+    }
+
     @GetMapping("/{filename}")
     @Operation(summary = "Get receipt image", 
                description = "Download a previously uploaded receipt image")
-    public ResponseEntity<byte[]> getReceipt(
+    public ResponseEntity<StreamingResponseBody> getReceipt(
             @PathVariable String filename,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            WebRequest webRequest,
             Authentication authentication) {
         
-        userPrincipal.getCurrentUser(authentication); // ensures authenticated
+        User user = userPrincipal.getCurrentUser(authentication);
 
-        // Filename is a UUID-based name (no userId prefix) — just fetch from storage.
-        // Appwrite bucket permissions ensure only server-side API key can access files.
-        byte[] imageBytes = fileStorageService.getReceiptBytes(filename);
-        String mimeType = fileStorageService.getFileMimeType(filename);
-        
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(mimeType))
-                .body(imageBytes);
+        // Type, size and owner come from the receipts table; the file itself is
+        // streamed from storage in one fetch
+        Receipt receipt = fileStorageService.getReceipt(filename, user.getId());
+
+        // Receipt files never change after upload: revalidation is a 304 with no storage fetch
+        String eTag = "\"" + (receipt.getSha256() != null ? receipt.getSha256() : receipt.getFileId()) + "\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+
+        MediaType contentType = fileStorageService.getMediaType(receipt);
+        Long size = receipt.getSizeBytes();
+        if (size == null) {
+            // Stored before sizes were recorded: whole file only, sent chunked
+            return ResponseEntity.ok()
+                    .contentType(contentType)
+                    .cacheControl(IMMUTABLE)
+                    .body(out -> fileStorageService.streamReceipt(receipt, null, out));
+        }
+
+        HttpRange range = singleRange(rangeHeader);
+        if (range == null) {
+            return ResponseEntity.ok()
+                    .contentType(contentType)
+                    .contentLength(size)
+                    .cacheControl(IMMUTABLE)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .body(out -> fileStorageService.streamReceipt(receipt, null, out));
+        }
+
+        long start = range.getRangeStart(size);
+        if (start >= size) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                    .build();
+        }
+        ResourceRange bytes = new ResourceRange(start, range.getRangeEnd(size));
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .contentType(contentType)
+                .contentLength(bytes.length())
+                .cacheControl(IMMUTABLE)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + bytes.start() + "-" + bytes.end() + "/" + size)
+                .body(out -> fileStorageService.streamReceipt(receipt, bytes, out));
+    }
+
+    /**
+     * The requested range if the header asks for exactly one; malformed and
+     * multi-range requests get the whole file, as RFC 9110 allows.
+     */
+    private static HttpRange singleRange(String rangeHeader) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.getFirst() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
     
     @DeleteMapping("/{filename}")
@@ -82,11 +237,8 @@ public class ReceiptController {
             @PathVariable String filename,
             Authentication authentication) {
         
-        // Receipts are keyed by UUID — authenticated user can only delete their own
-        // receipts if the receiptUrl stored on the transaction belongs to them.
-        // Server-side API key controls Appwrite access.
-        userPrincipal.getCurrentUser(authentication); // ensures authenticated
-        fileStorageService.deleteReceipt(filename);
+        User user = userPrincipal.getCurrentUser(authentication);
+        fileStorageService.deleteReceipt(fileStorageService.getReceipt(filename, user.getId()));
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.spendsense.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * State of a batch receipt scan. rejected lists the files that were not
+ * accepted at upload (wrong type, too large, over the batch limit) and is only
+ * filled in the upload response.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptScanBatchResponse {
+    private UUID batchId;
+    private int total;
+    private int finished;
+    private List<Item> items;
+    private List<Rejected> rejected;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    public boolean isComplete() {
+        return finished == total;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private int position;
+        private String filename;
+        private ReceiptScanJobResponse job;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Rejected {
+        private String filename;
+        private String error;
+    }
+}
@@ -0,0 +1,36 @@
+package com.spendsense.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.spendsense.model.enums.ReceiptScanStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * State of an asynchronous receipt scan. result is set once status is
+ * COMPLETED, error once it is FAILED.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptScanJobResponse {
+    private UUID jobId;
+    private ReceiptScanStatus status;
+    private ReceiptScanResponse result;
+    private String error;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime completedAt;
+
+    public boolean isFinished() {
+        return status == ReceiptScanStatus.COMPLETED || status == ReceiptScanStatus.FAILED;
+    }
+}
@@ -18,4 +18,5 @@ public class SpendingInsightResponse implements Serializable {
     private List<String> patterns;
     private List<String> topCategories;
     private List<String> anomalies;
+    private List<String> budgetRecommendations;
 }
\ No newline at end of file
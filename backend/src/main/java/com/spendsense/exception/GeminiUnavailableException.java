@@ -0,0 +1,12 @@
+package com.spendsense.exception;
+
+/**
+ * Thrown when a Gemini call is refused locally — the circuit breaker is open
+ * or the concurrency limit is reached — so callers can fail fast to a cached
+ * or degraded answer.
+ */
+public class GeminiUnavailableException extends RuntimeException {
+    public GeminiUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -31,6 +31,11 @@ public class GlobalExceptionHandler {
         return buildError(HttpStatus.BAD_REQUEST, ex.getMessage());
     }
 
+    @ExceptionHandler(GeminiUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleGeminiUnavailable(GeminiUnavailableException ex) {
+        return buildError(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+    }
+
     /**
      * Handles type conversion failures for query params (e.g. bad date formats).
      * Returns 400 with a human-readable message instead of 500.
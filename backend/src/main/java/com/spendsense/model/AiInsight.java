@@ -20,7 +20,8 @@ import java.util.UUID;
  * 2. Miss → check this table (expiresAt > now) → hit: populate Redis, return
  * 3. Both miss → generate via Gemini, persist here, populate Redis, return
  *
- * Lists (recommendations, patterns, topCategories) are stored as JSONB arrays
+ * Lists (recommendations, patterns, topCategories, anomalies,
+ * budgetRecommendations) are stored as JSONB arrays
  * in Postgres.
  * Use String fields here; Jackson handles serialization/deserialization in the
  * service.
@@ -58,12 +59,26 @@ public class AiInsight {
     @Column(name = "top_categories", columnDefinition = "JSONB")
     private String topCategories;
 
+    /** Findings from SpendingAnomalyDetector (optionally reworded by Gemini) */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "anomalies", columnDefinition = "JSONB")
+    private String anomalies;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "budget_recommendations", columnDefinition = "JSONB")
+    private String budgetRecommendations;
+
     @CreationTimestamp
     @Column(name = "generated_at", nullable = false, updatable = false)
     private LocalDateTime generatedAt;
 
+    /** SHA-256 of the compact context these insights were generated from. */
+    @Column(name = "context_hash", length = 64)
+    private String contextHash;
+
     /**
-     * After this timestamp the row is considered stale — service will regenerate.
+     * After this timestamp the row is considered stale — service will regenerate,
+     * unless the context hash is unchanged, in which case expiry is just extended.
      */
     @Column(name = "expires_at", nullable = false)
     private LocalDateTime expiresAt;
@@ -0,0 +1,42 @@
+package com.spendsense.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An export file (CSV/PDF) in storage, recorded when it is stored and deleted
+ * together with the file once expiresAt has passed.
+ */
+@Entity
+@Table(name = "export_files")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportFile {
+
+    /** Storage file id — the export filename without its extension. */
+    @Id
+    @Column(name = "file_id", length = 100)
+    private String fileId;
+
+    @Column(nullable = false)
+    private String filename;
+
+    @Column(name = "mime_type", nullable = false, length = 100)
+    private String mimeType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,36 @@
+package com.spendsense.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Records that a user's monthly insights email was dispatched for a period,
+ * so a resumed run does not send it again. UNIQUE (user_id, period) in the DB.
+ */
+@Entity
+@Table(name = "monthly_insight_deliveries")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyInsightDelivery {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(nullable = false, length = 7)
+    private String period;
+
+    @Column(name = "sent_at", nullable = false)
+    private LocalDateTime sentAt;
+}
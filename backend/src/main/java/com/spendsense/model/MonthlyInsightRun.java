@@ -0,0 +1,40 @@
+package com.spendsense.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint for one monthly insights email run.
+ * completedAt stays null until every recipient has been attempted; an
+ * incomplete row for the current period is resumed on startup.
+ */
+@Entity
+@Table(name = "monthly_insight_runs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyInsightRun {
+
+    /** Calendar month in IST, formatted yyyy-MM. */
+    @Id
+    @Column(length = 7)
+    private String period;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @Column(name = "sent_count", nullable = false)
+    private int sentCount;
+
+    @Column(name = "failed_count", nullable = false)
+    private int failedCount;
+}
@@ -0,0 +1,48 @@
+package com.spendsense.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Metadata of a receipt file in storage, recorded when it is stored.
+ * mimeType, sizeBytes and sha256 are null for receipts stored before this
+ * table existed (backfilled from transactions).
+ */
+@Entity
+@Table(name = "receipts")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Receipt {
+
+    /** Storage file id — the stored filename without its extension. */
+    @Id
+    @Column(name = "file_id", length = 64)
+    private String fileId;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    /** Stored filename "{fileId}.{ext}". */
+    @Column(nullable = false)
+    private String filename;
+
+    @Column(name = "mime_type", length = 100)
+    private String mimeType;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,32 @@
+package com.spendsense.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A multi-receipt upload; its receipts are {@link ReceiptScanBatchItem}s.
+ */
+@Entity
+@Table(name = "receipt_scan_batches")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptScanBatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
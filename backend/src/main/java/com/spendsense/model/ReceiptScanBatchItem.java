@@ -0,0 +1,37 @@
+package com.spendsense.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * One accepted file of a batch, in upload order. jobId may be an earlier job
+ * when the file was a duplicate.
+ */
+@Entity
+@Table(name = "receipt_scan_batch_items")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptScanBatchItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "batch_id", nullable = false)
+    private UUID batchId;
+
+    @Column(nullable = false)
+    private int position;
+
+    @Column(name = "job_id", nullable = false)
+    private UUID jobId;
+
+    private String filename;
+}
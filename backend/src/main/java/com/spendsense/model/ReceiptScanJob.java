@@ -0,0 +1,82 @@
+package com.spendsense.model;
+
+import com.spendsense.model.enums.ReceiptScanStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One asynchronous receipt scan.
+ *
+ * Lifecycle: PENDING → PROCESSING → COMPLETED | FAILED. imageData holds the
+ * upload until the job finishes and is then cleared; storedFilename is set once
+ * the image is in storage so a retried job does not upload it twice.
+ * result is the ReceiptScanResponse as JSON.
+ */
+@Entity
+@Table(name = "receipt_scan_jobs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptScanJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ReceiptScanStatus status;
+
+    @Column(name = "original_filename")
+    private String originalFilename;
+
+    @Column(name = "mime_type", nullable = false, length = 100)
+    private String mimeType;
+
+    @ToString.Exclude
+    @Column(name = "image_data")
+    private byte[] imageData;
+
+    @Column(name = "stored_filename")
+    private String storedFilename;
+
+    /** Hex SHA-256 of the upload, for exact duplicate detection. */
+    @Column(name = "content_sha256", length = 64)
+    private String contentSha256;
+
+    /** Hex 256-bit difference hash, for near-duplicate photos; null if not decodable. */
+    @Column(name = "perceptual_hash", length = 64)
+    private String perceptualHash;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "result", columnDefinition = "JSONB")
+    private String result;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
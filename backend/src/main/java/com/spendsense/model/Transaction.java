@@ -51,6 +51,9 @@ public class Transaction {
 
     private LocalDateTime lastProcessed;
 
+    /** Template that generated this occurrence; null for manual entries and templates themselves. */
+    private UUID recurringTemplateId;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private TransactionStatus status=TransactionStatus.COMPLETED;
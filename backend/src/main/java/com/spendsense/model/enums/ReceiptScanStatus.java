@@ -0,0 +1,8 @@
+package com.spendsense.model.enums;
+
+public enum ReceiptScanStatus {
+    PENDING,
+    PROCESSING,
+    COMPLETED,
+    FAILED
+}
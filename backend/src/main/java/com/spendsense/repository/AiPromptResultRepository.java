@@ -0,0 +1,26 @@
+package com.spendsense.repository;
+
+import com.spendsense.model.AiPromptResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface AiPromptResultRepository extends JpaRepository<AiPromptResult, String> {
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE AiPromptResult r SET r.lastUsedAt = :now WHERE r.promptHash = :promptHash")
+    void touch(@Param("promptHash") String promptHash, @Param("now") LocalDateTime now);
+
+    /** Prunes answers nobody has asked for since {@code cutoff}. */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM AiPromptResult r WHERE r.lastUsedAt < :cutoff")
+    int deleteUnusedSince(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,36 @@
+package com.spendsense.repository;
+
+import com.spendsense.model.ExportFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ExportFileRepository extends JpaRepository<ExportFile, String> {
+
+    /**
+     * One keyset page of expired export file ids, in id order after {@code afterId}.
+     */
+    @Query(value = """
+            SELECT file_id FROM export_files
+            WHERE expires_at < :now
+            AND file_id > :afterId
+            ORDER BY file_id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<String> findExpiredIdsAfter(@Param("now") LocalDateTime now,
+                                     @Param("afterId") String afterId,
+                                     @Param("limit") int limit);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ExportFile e WHERE e.fileId IN :fileIds")
+    int deleteByFileIdIn(@Param("fileIds") Collection<String> fileIds);
+}
@@ -0,0 +1,11 @@
+package com.spendsense.repository;
+
+import com.spendsense.model.MonthlyInsightDelivery;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface MonthlyInsightDeliveryRepository extends JpaRepository<MonthlyInsightDelivery, UUID> {
+}
@@ -0,0 +1,14 @@
+package com.spendsense.repository;
+
+import com.spendsense.model.MonthlyInsightRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MonthlyInsightRunRepository extends JpaRepository<MonthlyInsightRun, String> {
+
+    /** Most recent run that never finished — resumed on startup. */
+    Optional<MonthlyInsightRun> findFirstByCompletedAtIsNullOrderByStartedAtDesc();
+}
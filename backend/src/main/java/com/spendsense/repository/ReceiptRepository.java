@@ -0,0 +1,14 @@
+package com.spendsense.repository;
+
+import com.spendsense.model.Receipt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ReceiptRepository extends JpaRepository<Receipt, String> {
+
+    Optional<Receipt> findByFileIdAndUserId(String fileId, UUID userId);
+}
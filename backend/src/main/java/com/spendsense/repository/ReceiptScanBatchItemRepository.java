@@ -0,0 +1,27 @@
+package com.spendsense.repository;
+
+import com.spendsense.model.ReceiptScanBatchItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ReceiptScanBatchItemRepository extends JpaRepository<ReceiptScanBatchItem, UUID> {
+
+    /** Batch item joined with its job's state (never loads image_data). */
+    interface ItemView extends ReceiptScanJobRepository.StatusView {
+        int getPosition();
+
+        String getFilename();
+    }
+
+    @Query("SELECT i.position AS position, i.filename AS filename, j.id AS id, j.status AS status, " +
+            "j.result AS result, j.error AS error, j.createdAt AS createdAt, j.completedAt AS completedAt " +
+            "FROM ReceiptScanBatchItem i JOIN ReceiptScanJob j ON j.id = i.jobId " +
+            "WHERE i.batchId = :batchId ORDER BY i.position")
+    List<ItemView> findItems(@Param("batchId") UUID batchId);
+}
@@ -0,0 +1,21 @@
+package com.spendsense.repository;
+
+import com.spendsense.model.ReceiptScanBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface ReceiptScanBatchRepository extends JpaRepository<ReceiptScanBatch, UUID> {
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ReceiptScanBatch b WHERE b.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,113 @@
+package com.spendsense.repository;
+
+import com.spendsense.model.ReceiptScanJob;
+import com.spendsense.model.enums.ReceiptScanStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ReceiptScanJobRepository extends JpaRepository<ReceiptScanJob, UUID> {
+
+    /** Status view for polling — never loads image_data. */
+    interface StatusView {
+        UUID getId();
+
+        ReceiptScanStatus getStatus();
+
+        String getResult();
+
+        String getError();
+
+        LocalDateTime getCreatedAt();
+
+        LocalDateTime getCompletedAt();
+    }
+
+    interface HashView {
+        UUID getId();
+
+        String getPerceptualHash();
+    }
+
+    Optional<StatusView> findStatusByIdAndUserId(UUID id, UUID userId);
+
+    /** Latest non-failed job of this user for exactly the same upload. */
+    Optional<StatusView> findFirstByUserIdAndContentSha256AndStatusNotOrderByCreatedAtDesc(
+            UUID userId, String contentSha256, ReceiptScanStatus status);
+
+    /** Perceptual hashes of this user's recent non-failed jobs, newest first. */
+    @Query("SELECT j.id AS id, j.perceptualHash AS perceptualHash FROM ReceiptScanJob j " +
+            "WHERE j.userId = :userId AND j.perceptualHash IS NOT NULL AND j.createdAt >= :since " +
+            "AND j.status <> com.spendsense.model.enums.ReceiptScanStatus.FAILED " +
+            "ORDER BY j.createdAt DESC")
+    List<HashView> findRecentHashes(@Param("userId") UUID userId, @Param("since") LocalDateTime since);
+
+    /**
+     * Claims a PENDING job for this worker; returns 0 if another worker (or
+     * instance) got there first.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReceiptScanJob j " +
+            "SET j.status = com.spendsense.model.enums.ReceiptScanStatus.PROCESSING, " +
+            "j.attempts = j.attempts + 1, j.updatedAt = :now " +
+            "WHERE j.id = :id AND j.status = com.spendsense.model.enums.ReceiptScanStatus.PENDING")
+    int claim(@Param("id") UUID id, @Param("now") LocalDateTime now);
+
+    // Worker state changes are targeted UPDATEs: saving the entity would re-read
+    // and rewrite the whole image_data bytea on every step
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReceiptScanJob j SET j.storedFilename = :storedFilename, j.updatedAt = :now WHERE j.id = :id")
+    int recordStoredFilename(@Param("id") UUID id, @Param("storedFilename") String storedFilename,
+            @Param("now") LocalDateTime now);
+
+    /** Back to PENDING for another attempt. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReceiptScanJob j " +
+            "SET j.status = com.spendsense.model.enums.ReceiptScanStatus.PENDING, j.updatedAt = :now " +
+            "WHERE j.id = :id")
+    int release(@Param("id") UUID id, @Param("now") LocalDateTime now);
+
+    /** Records the outcome and drops the image, which now lives in storage (or the scan is over). */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReceiptScanJob j " +
+            "SET j.status = :status, j.result = :result, j.error = :error, j.imageData = NULL, " +
+            "j.completedAt = :now, j.updatedAt = :now " +
+            "WHERE j.id = :id")
+    int finish(@Param("id") UUID id, @Param("status") ReceiptScanStatus status, @Param("result") String result,
+            @Param("error") String error, @Param("now") LocalDateTime now);
+
+    @Query("SELECT j.id FROM ReceiptScanJob j " +
+            "WHERE j.status = com.spendsense.model.enums.ReceiptScanStatus.PENDING ORDER BY j.createdAt")
+    List<UUID> findPendingIds();
+
+    /**
+     * Returns PROCESSING jobs whose worker went away (crash, redeploy) to PENDING.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReceiptScanJob j " +
+            "SET j.status = com.spendsense.model.enums.ReceiptScanStatus.PENDING, j.updatedAt = :now " +
+            "WHERE j.status = com.spendsense.model.enums.ReceiptScanStatus.PROCESSING " +
+            "AND j.updatedAt < :staleBefore")
+    int requeueStale(@Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ReceiptScanJob j " +
+            "WHERE j.status IN (com.spendsense.model.enums.ReceiptScanStatus.COMPLETED, " +
+            "com.spendsense.model.enums.ReceiptScanStatus.FAILED) AND j.completedAt < :cutoff")
+    int deleteFinishedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -12,6 +12,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -96,6 +97,55 @@ public interface TransactionRepository extends JpaRepository<Transaction, UUID>
             """)
     List<Transaction> findByIsRecurringTrueAndNextRecurringDateBefore(@Param("now") LocalDateTime now);
 
+    /**
+     * Claims the next chunk of due recurring templates for this worker.
+     * FOR UPDATE SKIP LOCKED lets several workers (or overlapping runs) split the
+     * backlog without blocking on each other's rows. Templates already processed
+     * in this run (lastProcessed >= runStartedAt) and those that failed in it
+     * ({@code excludedIds}, never empty) are skipped, so neither a template that
+     * still has missed dates left nor a failing one is re-claimed forever within
+     * the same run.
+     */
+    @Query(value = """
+            SELECT * FROM transactions
+            WHERE is_recurring = true
+            AND next_recurring_date < :now
+            AND (last_processed IS NULL OR last_processed < :runStartedAt)
+            AND id NOT IN (:excludedIds)
+            ORDER BY next_recurring_date
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<Transaction> claimDueRecurringTemplates(@Param("now") LocalDateTime now,
+            @Param("runStartedAt") LocalDateTime runStartedAt,
+            @Param("excludedIds") Collection<UUID> excludedIds,
+            @Param("limit") int limit);
+
+    /**
+     * Lightweight (id, nextRecurringDate) rows for recurring templates due before
+     * {@code horizon} — used to seed RecurringDueQueue without loading entities.
+     */
+    @Query("""
+            SELECT t.id AS id, t.nextRecurringDate AS nextRecurringDate FROM Transaction t
+            WHERE t.isRecurring = true
+            AND t.nextRecurringDate < :horizon
+            """)
+    List<RecurringSchedule> findRecurringSchedulesDueBefore(@Param("horizon") LocalDateTime horizon);
+
+    /** Current schedule of the given templates; used to re-arm them after they fire. */
+    @Query("""
+            SELECT t.id AS id, t.nextRecurringDate AS nextRecurringDate FROM Transaction t
+            WHERE t.isRecurring = true
+            AND t.id IN :ids
+            """)
+    List<RecurringSchedule> findRecurringSchedulesByIdIn(@Param("ids") Collection<UUID> ids);
+
+    interface RecurringSchedule {
+        UUID getId();
+
+        LocalDateTime getNextRecurringDate();
+    }
+
     // ── Aggregate query ───────────────────────────────────────────────────────
 
     @Query("SELECT SUM(t.amount) FROM Transaction t WHERE t.user.id = :userId AND t.type = :type")
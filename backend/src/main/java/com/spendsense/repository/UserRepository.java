@@ -2,8 +2,11 @@ package com.spendsense.repository;
 
 import com.spendsense.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -21,4 +24,22 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     //checks if a user is present based on email
     boolean existsByEmail(String email);
 
+    /**
+     * Keyset page of users with an email who have not yet received the monthly
+     * insights email for {@code period}. Used by MonthlyInsightsScheduler to
+     * stream the user table instead of loading it all with findAll().
+     */
+    @Query(value = """
+            SELECT * FROM users u
+            WHERE u.id > :afterId
+            AND u.email IS NOT NULL
+            AND NOT EXISTS (SELECT 1 FROM monthly_insight_deliveries d
+                            WHERE d.user_id = u.id AND d.period = :period)
+            ORDER BY u.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<User> findInsightRecipientsAfter(@Param("afterId") UUID afterId,
+                                          @Param("period") String period,
+                                          @Param("limit") int limit);
+
 }
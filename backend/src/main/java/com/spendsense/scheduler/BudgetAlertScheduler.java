@@ -9,17 +9,23 @@ import org.springframework.stereotype.Component;
 /**
  * Scheduled job that checks every user's budget daily at 8 AM
  * and fires email alerts when spending crosses the 80% threshold.
+ * Runs on its own "budget-alerts" executor via {@link ScheduledJobRunner}.
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class BudgetAlertScheduler {
 
+    private static final String JOB_NAME = "budget-alerts";
+
     private final BudgetAlertService budgetAlertService;
+    private final ScheduledJobRunner jobRunner;
 
     @Scheduled(cron = "${scheduling.budget-alerts.cron}", zone = "Asia/Kolkata")
     public void checkBudgetsAndSendAlerts() {
-        log.info("Starting daily budget alert check job");
-        budgetAlertService.checkBudgetsAndSendAlerts();
+        jobRunner.submit(JOB_NAME, () -> {
+            log.info("Starting daily budget alert check job");
+            budgetAlertService.checkBudgetsAndSendAlerts();
+        });
     }
 }
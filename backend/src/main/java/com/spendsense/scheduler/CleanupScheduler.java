@@ -1,5 +1,8 @@
 package com.spendsense.scheduler;
 
+import com.spendsense.repository.AiPromptResultRepository;
+import com.spendsense.repository.ReceiptScanBatchRepository;
+import com.spendsense.repository.ReceiptScanJobRepository;
 import com.spendsense.service.FileStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -7,25 +10,72 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
+
 /**
- * Weekly cleanup job that removes expired export files from local storage.
- * Runs every Sunday at 3 AM (configurable via scheduling.cleanup.cron).
- * Retention period is controlled by export.temp-file-retention-hours (default 24 h).
+ * Cleanup jobs, each on its own executor via {@link ScheduledJobRunner}.
+ *
+ * Hourly "export-expiry" (scheduling.export-expiry.cron): deletes export files
+ * whose export_files.expires_at has passed — retention is
+ * export.temp-file-retention-hours (default 24 h), set when the file is stored.
+ *
+ * Weekly "export-cleanup", every Sunday at 3 AM (scheduling.cleanup.cron):
+ * sweeps the exports bucket for files the table does not track, prunes cached
+ * Gemini answers (ai_prompt_results) not used for ai.prompt-cache.retention-days
+ * (default 30), and finished receipt scan jobs and batches older than
+ * receipts.scan.retention-days (default 30).
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class CleanupScheduler {
 
+    private static final String JOB_NAME = "export-cleanup";
+    private static final String EXPIRY_JOB_NAME = "export-expiry";
+
     private final FileStorageService fileStorageService;
+    private final AiPromptResultRepository promptResultRepository;
+    private final ReceiptScanJobRepository receiptScanJobRepository;
+    private final ReceiptScanBatchRepository receiptScanBatchRepository;
+    private final ScheduledJobRunner jobRunner;
 
     @Value("${export.temp-file-retention-hours:24}")
     private int retentionHours;
 
+    @Value("${scheduling.export-expiry.page-size:100}")
+    private int expiryPageSize;
+
+    @Value("${scheduling.export-expiry.concurrency:8}")
+    private int expiryConcurrency;
+
+    @Value("${ai.prompt-cache.retention-days:30}")
+    private int promptCacheRetentionDays;
+
+    @Value("${receipts.scan.retention-days:30}")
+    private int receiptScanRetentionDays;
+
+    @Scheduled(cron = "${scheduling.export-expiry.cron}", zone = "Asia/Kolkata")
+    public void deleteExpiredExports() {
+        jobRunner.submit(EXPIRY_JOB_NAME,
+                () -> fileStorageService.deleteExpiredExports(expiryPageSize, expiryConcurrency));
+    }
+
     @Scheduled(cron = "${scheduling.cleanup.cron}", zone = "Asia/Kolkata")
     public void cleanupExpiredExports() {
-        log.info("Starting export file cleanup job (retention: {} hours)", retentionHours);
-        int deleted = fileStorageService.deleteOldExports(retentionHours);
-        log.info("Export file cleanup complete. Deleted: {} file(s).", deleted);
+        jobRunner.submit(JOB_NAME, () -> {
+            log.info("Starting untracked export file cleanup (retention: {} hours)", retentionHours);
+            int deleted = fileStorageService.deleteUntrackedExports(retentionHours);
+            log.info("Untracked export file cleanup complete. Deleted: {} file(s).", deleted);
+
+            int pruned = promptResultRepository.deleteUnusedSince(
+                    LocalDateTime.now().minusDays(promptCacheRetentionDays));
+            log.info("Pruned {} cached Gemini answer(s) unused for {} days.", pruned, promptCacheRetentionDays);
+
+            LocalDateTime receiptCutoff = LocalDateTime.now().minusDays(receiptScanRetentionDays);
+            int batches = receiptScanBatchRepository.deleteCreatedBefore(receiptCutoff);
+            int jobs = receiptScanJobRepository.deleteFinishedBefore(receiptCutoff);
+            log.info("Deleted {} receipt scan batch(es) and {} finished job(s) older than {} days.",
+                    batches, jobs, receiptScanRetentionDays);
+        });
     }
 }
@@ -1,56 +1,241 @@
 package com.spendsense.scheduler;
 
 import com.spendsense.dto.response.SpendingInsightResponse;
+import com.spendsense.exception.GeminiUnavailableException;
+import com.spendsense.model.MonthlyInsightDelivery;
+import com.spendsense.model.MonthlyInsightRun;
 import com.spendsense.model.User;
+import com.spendsense.repository.MonthlyInsightDeliveryRepository;
+import com.spendsense.repository.MonthlyInsightRunRepository;
 import com.spendsense.repository.UserRepository;
 import com.spendsense.service.EmailService;
 import com.spendsense.service.ai.AiInsightsService;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Scheduler that sends personalized AI spending insights to all users
  * on the 1st of every month at 8:00 AM.
+ * Runs on its own "monthly-insights" executor via {@link ScheduledJobRunner},
+ * so its Gemini calls never hold up the other jobs.
+ *
+ * Pipeline:
+ * - users are streamed in keyset pages (scheduling.monthly-insights.page-size)
+ * instead of loading the whole table
+ * - each user is processed on a virtual thread, at most
+ * scheduling.monthly-insights.concurrency at a time
+ * - Gemini calls are paced by a token bucket sized to
+ * scheduling.monthly-insights.gemini-requests-per-minute; a token is taken only
+ * when Gemini is actually called, not for answers served from a cache
+ * - a user whose Gemini call is refused locally (concurrency limit or open
+ * circuit breaker) is retried after scheduling.monthly-insights.gemini-retry-backoff,
+ * up to scheduling.monthly-insights.gemini-retries times, before counting as failed
+ * - every dispatched email is checkpointed in monthly_insight_deliveries, and the
+ * run itself in monthly_insight_runs. A run is marked complete only when no user
+ * failed; an unfinished run for the current month is resumed on startup and by
+ * scheduling.monthly-insights.retry-cron, and skips users that were already sent.
+ * Users that failed are not checkpointed, so the resumed run retries them and
+ * counts their failures afresh
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class MonthlyInsightsScheduler {
 
+    private static final String JOB_NAME = "monthly-insights";
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+
     private final UserRepository userRepository;
+    private final MonthlyInsightRunRepository runRepository;
+    private final MonthlyInsightDeliveryRepository deliveryRepository;
     private final AiInsightsService aiInsightsService;
     private final EmailService emailService;
+    private final ScheduledJobRunner jobRunner;
+
+    @Value("${scheduling.monthly-insights.page-size:100}")
+    private int pageSize;
+
+    @Value("${scheduling.monthly-insights.concurrency:4}")
+    private int concurrency;
+
+    @Value("${scheduling.monthly-insights.gemini-requests-per-minute:10}")
+    private int geminiRequestsPerMinute;
+
+    @Value("${scheduling.monthly-insights.gemini-retries:3}")
+    private int geminiRetries;
+
+    @Value("${scheduling.monthly-insights.gemini-retry-backoff:30s}")
+    private Duration geminiRetryBackoff;
 
     /**
      * Runs at 8:00 AM on the 1st of every month.
      * Generates AI insights for each user and sends them via email.
      */
-    @Scheduled(cron = "0 0 8 1 * ?", zone = "Asia/Kolkata")
+    @Scheduled(cron = "${scheduling.monthly-insights.cron:0 0 8 1 * ?}", zone = "Asia/Kolkata")
     public void sendMonthlyInsightEmails() {
-        log.info("Starting monthly AI insights email job...");
+        String period = YearMonth.now(IST).toString();
+        jobRunner.submit(JOB_NAME, () -> runMonthlyInsights(period));
+    }
+
+    /**
+     * Resumes this month's run if the previous instance died part-way through
+     * or some users failed. Runs from older months are left alone — those
+     * emails would be stale.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${scheduling.monthly-insights.retry-cron:0 0 */6 * * ?}", zone = "Asia/Kolkata")
+    public void resumeUnfinishedRun() {
+        String period = YearMonth.now(IST).toString();
+        runRepository.findFirstByCompletedAtIsNullOrderByStartedAtDesc()
+                .filter(run -> run.getPeriod().equals(period))
+                .ifPresent(run -> {
+                    log.info("Resuming unfinished monthly insights run for {} (sent so far: {}, failed: {})",
+                            period, run.getSentCount(), run.getFailedCount());
+                    jobRunner.submit(JOB_NAME, () -> runMonthlyInsights(period));
+                });
+    }
+
+    private void runMonthlyInsights(String period) {
+        MonthlyInsightRun run = runRepository.findById(period)
+                .orElseGet(() -> runRepository.save(MonthlyInsightRun.builder()
+                        .period(period)
+                        .startedAt(LocalDateTime.now())
+                        .build()));
+        if (run.getCompletedAt() != null) {
+            log.info("Monthly insights for {} already completed at {} — nothing to do", period, run.getCompletedAt());
+            return;
+        }
+
+        log.info("Starting monthly AI insights email job for {} (concurrency: {}, Gemini RPM: {})",
+                period, concurrency, geminiRequestsPerMinute);
 
-        List<User> users = userRepository.findAll();
-        int success = 0, failed = 0;
+        Bucket geminiQuota = Bucket.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(geminiRequestsPerMinute)
+                        .refillGreedy(geminiRequestsPerMinute, Duration.ofMinutes(1))
+                        .build())
+                .build();
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger sent = new AtomicInteger(run.getSentCount());
+        // Failed users are retried by this pass, so earlier failures must not be counted again
+        AtomicInteger failed = new AtomicInteger();
 
-        for (User user : users) {
+        UUID cursor = new UUID(0L, 0L);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<User> page;
+            while (!(page = userRepository.findInsightRecipientsAfter(cursor, period, pageSize)).isEmpty()) {
+                for (User user : page) {
+                    inFlight.acquire();
+                    executor.submit(() -> {
+                        try {
+                            if (deliver(user, period, geminiQuota)) {
+                                sent.incrementAndGet();
+                            } else {
+                                failed.incrementAndGet();
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+                cursor = page.getLast().getId();
+                checkpoint(run, sent, failed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Monthly insights run for {} interrupted; it will resume on next startup", period);
+            checkpoint(run, sent, failed);
+            return;
+        }
+
+        if (failed.get() > 0) {
+            checkpoint(run, sent, failed);
+            log.warn("Monthly insights run for {} left open: {} user(s) failed and will be retried. Sent: {}",
+                    period, failed.get(), sent.get());
+            return;
+        }
+        run.setCompletedAt(LocalDateTime.now());
+        checkpoint(run, sent, failed);
+        log.info("Monthly insights job complete for {}. Sent: {}", period, sent.get());
+    }
+
+    /**
+     * Generates and emails one user's insights, then records the delivery.
+     *
+     * @return true if the email was dispatched
+     */
+    private boolean deliver(User user, String period, Bucket geminiQuota) {
+        try {
+            SpendingInsightResponse insights = generateInsights(user, geminiQuota);
+            emailService.sendMonthlyInsightsEmail(
+                    user.getEmail(),
+                    user.getName() != null ? user.getName() : "there",
+                    insights);
+            deliveryRepository.save(MonthlyInsightDelivery.builder()
+                    .userId(user.getId())
+                    .period(period)
+                    .sentAt(LocalDateTime.now())
+                    .build());
+            log.debug("Monthly insights sent to: {}", user.getEmail());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.error("Failed to send monthly insights to user {}: {}", user.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Gemini refusing a call locally is push-back, not a verdict on this user:
+     * wait for the limiter or breaker to recover and try again.
+     */
+    private SpendingInsightResponse generateInsights(User user, Bucket geminiQuota) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
             try {
-                SpendingInsightResponse insights = aiInsightsService.generateSpendingInsights(user.getId());
-                emailService.sendMonthlyInsightsEmail(
-                        user.getEmail(),
-                        user.getName() != null ? user.getName() : "there",
-                        insights);
-                success++;
-                log.debug("Monthly insights sent to: {}", user.getEmail());
-            } catch (Exception e) {
-                failed++;
-                log.error("Failed to send monthly insights to user {}: {}", user.getId(), e.getMessage());
+                return aiInsightsService.generateSpendingInsights(user.getId(), () -> awaitGeminiQuota(geminiQuota));
+            } catch (GeminiUnavailableException e) {
+                if (attempt > geminiRetries) {
+                    throw e;
+                }
+                log.debug("Gemini unavailable for user {} (attempt {}/{}) — retrying: {}",
+                        user.getId(), attempt, geminiRetries + 1, e.getMessage());
+                Thread.sleep(geminiRetryBackoff.multipliedBy(attempt));
             }
         }
+    }
+
+    private static void awaitGeminiQuota(Bucket geminiQuota) {
+        try {
+            geminiQuota.asBlocking().consume(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Gemini quota", e);
+        }
+    }
 
-        log.info("Monthly insights job complete. Sent: {}, Failed: {}", success, failed);
+    private void checkpoint(MonthlyInsightRun run, AtomicInteger sent, AtomicInteger failed) {
+        run.setSentCount(sent.get());
+        run.setFailedCount(failed.get());
+        runRepository.save(run);
     }
 }
@@ -0,0 +1,31 @@
+package com.spendsense.scheduler;
+
+import com.spendsense.service.ai.ReceiptScanJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Re-queues receipt scan jobs left behind by a previous instance, a full queue
+ * or a retryable failure: once on startup, then every receipts.scan.sweep-interval
+ * (default 30s). Runs on its own "receipt-scan-sweep" executor via
+ * {@link ScheduledJobRunner}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReceiptScanSweepScheduler {
+
+    private static final String JOB_NAME = "receipt-scan-sweep";
+
+    private final ReceiptScanJobService receiptScanJobService;
+    private final ScheduledJobRunner jobRunner;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${receipts.scan.sweep-interval:30s}",
+            initialDelayString = "${receipts.scan.sweep-interval:30s}")
+    public void requeueUnfinishedJobs() {
+        jobRunner.submit(JOB_NAME, receiptScanJobService::requeueUnfinishedJobs);
+    }
+}
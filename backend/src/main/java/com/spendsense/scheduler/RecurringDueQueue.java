@@ -0,0 +1,247 @@
+package com.spendsense.scheduler;
+
+import com.spendsense.repository.TransactionRepository;
+import com.spendsense.repository.TransactionRepository.RecurringSchedule;
+import com.spendsense.service.RecurringTemplateChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+/**
+ * In-memory min-heap of upcoming recurring template due dates.
+ *
+ * Only templates due within {@code scheduling.recurring-transactions.horizon-hours}
+ * are held; the rest are picked up by the next reconciliation {@link #reload()}.
+ * A single wake-up is armed on the TaskScheduler for the earliest entry, so each
+ * template fires close to its nextRecurringDate instead of waiting for a poll.
+ *
+ * Entries are updated after commit whenever TransactionService creates, edits
+ * or deletes a template ({@link RecurringTemplateChangedEvent}). Superseded heap
+ * entries are discarded lazily: {@code dueById} holds the live due date per
+ * template and anything in the heap that disagrees with it is skipped.
+ *
+ * A template still overdue after it fired (planning failed, or its chunk rolled
+ * back) is not re-armed at its past due date, which would fire again at once:
+ * it is retried after RETRY_DELAY, doubling on every consecutive failure up to
+ * MAX_RETRY_DELAY.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RecurringDueQueue {
+
+    /** Back-off before re-firing templates whose handler was busy or threw. */
+    private static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+    /** Ceiling for the doubling back-off of templates that keep failing. */
+    private static final Duration MAX_RETRY_DELAY = Duration.ofHours(1);
+
+    private final TransactionRepository transactionRepository;
+    private final TaskScheduler taskScheduler;
+
+    @Value("${scheduling.recurring-transactions.horizon-hours:48}")
+    private int horizonHours;
+
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>(Comparator.comparing(Entry::dueAt));
+    private final Map<UUID, LocalDateTime> dueById = new HashMap<>();
+    /** Consecutive fires after which the template was still overdue */
+    private final Map<UUID, Integer> failuresById = new HashMap<>();
+
+    private LocalDateTime horizon = LocalDateTime.MIN;
+    private ScheduledFuture<?> wakeUp;
+    private LocalDateTime wakeUpAt;
+    private Consumer<Set<UUID>> dueHandler = ids -> {
+    };
+
+    /** Registers the callback that materialises templates once they are due. */
+    public void onDue(Consumer<Set<UUID>> handler) {
+        this.dueHandler = handler;
+    }
+
+    /**
+     * Rebuilds the heap from the database. Called on startup and by the
+     * reconciliation pass; also extends the horizon.
+     */
+    public void reload() {
+        LocalDateTime newHorizon = LocalDateTime.now().plusHours(horizonHours);
+        List<RecurringSchedule> schedules = transactionRepository.findRecurringSchedulesDueBefore(newHorizon);
+
+        synchronized (this) {
+            heap.clear();
+            dueById.clear();
+            horizon = newHorizon;
+            for (RecurringSchedule schedule : schedules) {
+                put(schedule.getId(), schedule.getNextRecurringDate());
+            }
+            rearm();
+        }
+        log.info("Recurring due queue loaded {} template(s) due before {}", schedules.size(), newHorizon);
+    }
+
+    /**
+     * Re-reads the given templates' schedules after they have been processed.
+     * Templates whose due date did not move past now failed and are backed off.
+     */
+    public void refresh(Collection<UUID> templateIds) {
+        if (templateIds.isEmpty()) {
+            return;
+        }
+        List<RecurringSchedule> schedules = transactionRepository.findRecurringSchedulesByIdIn(templateIds);
+
+        synchronized (this) {
+            LocalDateTime now = LocalDateTime.now();
+            templateIds.forEach(dueById::remove);
+            Set<UUID> stillRecurring = new HashSet<>();
+            for (RecurringSchedule schedule : schedules) {
+                UUID id = schedule.getId();
+                LocalDateTime dueAt = schedule.getNextRecurringDate();
+                stillRecurring.add(id);
+                if (dueAt != null && !dueAt.isAfter(now)) {
+                    put(id, backOff(id, now));
+                } else {
+                    failuresById.remove(id);
+                    put(id, dueAt);
+                }
+            }
+            templateIds.stream()
+                    .filter(id -> !stillRecurring.contains(id))
+                    .forEach(failuresById::remove);
+            rearm();
+        }
+    }
+
+    /** Adds, moves or (with a null date) removes a single template. */
+    public synchronized void schedule(UUID templateId, LocalDateTime dueAt) {
+        dueById.remove(templateId);
+        // An edited template gets a fresh start
+        failuresById.remove(templateId);
+        put(templateId, dueAt);
+        rearm();
+    }
+
+    /** Puts fired templates back to be retried shortly (handler busy or failed). */
+    public synchronized void retryLater(Collection<UUID> templateIds) {
+        LocalDateTime retryAt = LocalDateTime.now().plus(RETRY_DELAY);
+        templateIds.forEach(id -> put(id, retryAt));
+        rearm();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onTemplateChanged(RecurringTemplateChangedEvent event) {
+        schedule(event.templateId(), event.nextRecurringDate());
+    }
+
+    public synchronized int size() {
+        return dueById.size();
+    }
+
+    // ==================== Heap internals (caller holds the lock) ====================
+
+    private void put(UUID templateId, LocalDateTime dueAt) {
+        if (dueAt == null || !dueAt.isBefore(horizon)) {
+            // Beyond the horizon — the next reconciliation reload will pick it up
+            return;
+        }
+        dueById.put(templateId, dueAt);
+        heap.add(new Entry(templateId, dueAt));
+    }
+
+    /** Next attempt for a template that is still overdue after firing. */
+    private LocalDateTime backOff(UUID templateId, LocalDateTime now) {
+        int failures = failuresById.merge(templateId, 1, Integer::sum);
+        Duration delay = RETRY_DELAY.multipliedBy(1L << Math.min(failures - 1, 10));
+        if (delay.compareTo(MAX_RETRY_DELAY) > 0) {
+            delay = MAX_RETRY_DELAY;
+        }
+        log.warn("Recurring template {} still overdue after firing ({} time(s)); retrying in {}",
+                templateId, failures, delay);
+        return now.plus(delay);
+    }
+
+    private Entry peekLive() {
+        Entry head;
+        while ((head = heap.peek()) != null && !Objects.equals(dueById.get(head.templateId()), head.dueAt())) {
+            heap.poll();
+        }
+        return head;
+    }
+
+    private void rearm() {
+        Entry head = peekLive();
+        if (head == null) {
+            cancelWakeUp();
+            return;
+        }
+        if (wakeUp != null && !wakeUp.isDone() && !head.dueAt().isBefore(wakeUpAt)) {
+            // Already armed at or before the earliest entry; an early fire simply re-arms
+            return;
+        }
+        cancelWakeUp();
+        wakeUpAt = head.dueAt();
+        wakeUp = taskScheduler.schedule(this::fire, wakeUpAt.atZone(ZoneId.systemDefault()).toInstant());
+        log.debug("Recurring due queue armed for {} ({} pending)", wakeUpAt, dueById.size());
+    }
+
+    private void cancelWakeUp() {
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+        }
+        wakeUp = null;
+        wakeUpAt = null;
+    }
+
+    // ==================== Wake-up ====================
+
+    private void fire() {
+        Set<UUID> due = new HashSet<>();
+        synchronized (this) {
+            wakeUp = null;
+            wakeUpAt = null;
+            LocalDateTime now = LocalDateTime.now();
+            Entry head;
+            while ((head = peekLive()) != null && !head.dueAt().isAfter(now)) {
+                heap.poll();
+                dueById.remove(head.templateId());
+                due.add(head.templateId());
+            }
+        }
+
+        if (!due.isEmpty()) {
+            log.info("{} recurring template(s) due — processing", due.size());
+            try {
+                dueHandler.accept(due);
+            } catch (Exception e) {
+                log.error("Failed to hand off due recurring templates, retrying in {}: {}",
+                        RETRY_DELAY, e.getMessage(), e);
+                retryLater(due);
+                return;
+            }
+        }
+
+        synchronized (this) {
+            rearm();
+        }
+    }
+
+    private record Entry(UUID templateId, LocalDateTime dueAt) {
+    }
+}
@@ -1,148 +1,154 @@
 package com.spendsense.scheduler;
 
-import com.spendsense.model.Account;
-import com.spendsense.model.Transaction;
-import com.spendsense.model.enums.RecurringInterval;
-import com.spendsense.model.enums.TransactionStatus;
-import com.spendsense.model.enums.TransactionType;
-import com.spendsense.repository.AccountRepository;
-import com.spendsense.repository.TransactionRepository;
+import com.spendsense.service.RecurringTransactionProcessor;
+import com.spendsense.service.RecurringTransactionProcessor.ChunkResult;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * Scheduled job that processes due recurring transactions.
- * - Runs every 6 hours so it catches missed runs on dev restarts / deployments.
+ * - Templates fire close to their nextRecurringDate via {@link RecurringDueQueue},
+ * an in-memory min-heap seeded from the database.
+ * - A daily reconciliation pass drains anything the heap missed (other
+ * instances, templates beyond the heap horizon) and reloads the heap.
  * - Also fires once on ApplicationReadyEvent as a catch-up for any overdue
- * transactions that built up while the server was offline.
+ * transactions that built up while the server was offline. The catch-up runs
+ * in the background so the instance serves traffic immediately; its progress
+ * is reported by {@link RecurringCatchUpHealthIndicator}.
+ * - Every run goes through {@link ScheduledJobRunner}, so it never blocks other
+ * jobs. Due-queue runs use the "recurring-transactions" job; the catch-up and the
+ * reconciliation pass use their own "recurring-reconcile" job, so a busy queue
+ * never causes the daily reconciliation to be skipped. Runs of the two jobs may
+ * overlap — chunks are claimed with SKIP LOCKED, so they split the backlog.
+ *
+ * The backlog is drained in chunks (scheduling.recurring-transactions.chunk-size);
+ * each chunk is claimed and committed independently by
+ * {@link RecurringTransactionProcessor}, so one bad chunk or a long backlog
+ * never holds locks for the whole run.
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class RecurringTransactionScheduler {
 
-    private final TransactionRepository transactionRepository;
-    private final AccountRepository accountRepository;
+    static final String JOB_NAME = "recurring-transactions";
+    static final String RECONCILE_JOB_NAME = "recurring-reconcile";
+
+    private final RecurringTransactionProcessor recurringTransactionProcessor;
+    private final RecurringDueQueue recurringDueQueue;
+    private final RecurringCatchUpHealthIndicator catchUpHealth;
+    private final ScheduledJobRunner jobRunner;
+
+    @Value("${scheduling.recurring-transactions.chunk-size:100}")
+    private int chunkSize;
+
+    @PostConstruct
+    void registerDueHandler() {
+        recurringDueQueue.onDue(this::processDueTemplates);
+    }
 
     /**
      * Startup catch-up: processes any recurring transactions that became due
      * while the server was down (dev restarts, overnight downtime, deployments).
+     * Runs on the job executor so the ApplicationReadyEvent listener returns
+     * straight away instead of delaying the first request after a cold start.
      */
     @EventListener(ApplicationReadyEvent.class)
     public void runCatchUpOnStartup() {
-        log.info("Running recurring transaction catch-up on application startup");
-        processRecurringTransactions();
+        log.info("Running recurring transaction catch-up in the background");
+        jobRunner.submit(RECONCILE_JOB_NAME, this::runCatchUp);
+    }
+
+    private void runCatchUp() {
+        catchUpHealth.started();
+        try {
+            drainDueTemplates(catchUpHealth::recordChunk);
+            recurringDueQueue.reload();
+            catchUpHealth.completed();
+        } catch (Exception e) {
+            log.error("Recurring transaction startup catch-up failed: {}", e.getMessage(), e);
+            catchUpHealth.failed(e);
+        }
     }
 
     /**
-     * Scheduled job — runs every 6 hours (configurable via application.yml).
-     * Running 4× per day ensures daily transactions are never missed due to
-     * timing, and weekly/monthly ones are caught promptly.
+     * Reconciliation pass — runs daily (configurable via application.yml).
+     * Day-to-day processing is driven by RecurringDueQueue; this only catches
+     * what the heap could not see and refreshes it.
      */
     @Scheduled(cron = "${scheduling.recurring-transactions.cron}", zone = "Asia/Kolkata")
-    @Transactional
     public void processRecurringTransactions() {
-        log.info("Starting recurring transaction processing job");
-
-        LocalDateTime now = LocalDateTime.now();
-        List<Transaction> dueTransactions = transactionRepository.findByIsRecurringTrueAndNextRecurringDateBefore(now);
-
-        log.info("Found {} recurring transactions to process", dueTransactions.size());
-
-        int successCount = 0, failureCount = 0;
+        jobRunner.submit(RECONCILE_JOB_NAME, () -> {
+            drainDueTemplates();
+            recurringDueQueue.reload();
+        });
+    }
 
-        for (Transaction template : dueTransactions) {
+    /**
+     * Wake-up from RecurringDueQueue: drain the backlog, then re-arm the fired
+     * templates. If a run is already in flight (or this one fails) the templates
+     * go back on the queue for a short retry.
+     */
+    private void processDueTemplates(Set<UUID> templateIds) {
+        boolean accepted = jobRunner.submit(JOB_NAME, () -> {
             try {
-                processRecurringTransaction(template);
-                successCount++;
+                drainDueTemplates();
+                recurringDueQueue.refresh(templateIds);
             } catch (Exception e) {
-                log.error("Failed to process recurring transaction {}: {}",
-                        template.getId(), e.getMessage(), e);
-                failureCount++;
+                recurringDueQueue.retryLater(templateIds);
+                throw e;
             }
+        });
+        if (!accepted) {
+            recurringDueQueue.retryLater(templateIds);
         }
-
-        log.info("Recurring transaction processing complete. Success: {}, Failed: {}",
-                successCount, failureCount);
     }
 
-    private void processRecurringTransaction(Transaction template) {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime nextDate = template.getNextRecurringDate();
-
-        // Loop to catch up all missed intervals if the server was down for a long time
-        int catchUpCount = 0;
-        final int MAX_CATCHUP = 30; // Safety limit to prevent infinite loops
-
-        while (nextDate != null && nextDate.isBefore(now) && catchUpCount < MAX_CATCHUP) {
-            Transaction newTx = new Transaction();
-            newTx.setType(template.getType());
-            newTx.setAmount(template.getAmount());
-            newTx.setDescription(template.getDescription());
-            // Use the target date for the transaction, not 'now', so historical records are
-            // accurate
-            newTx.setDate(nextDate);
-            newTx.setCategory(template.getCategory());
-            newTx.setUser(template.getUser());
-            newTx.setAccount(template.getAccount());
-            newTx.setStatus(TransactionStatus.COMPLETED);
-            newTx.setIsRecurring(false);
-            newTx.setRecurringInterval(null);
-            newTx.setNextRecurringDate(null);
-
-            updateAccountBalance(template.getAccount(), newTx);
-            transactionRepository.save(newTx);
-
-            log.debug("Generated missed recurring transaction for date: {}", nextDate);
-
-            // Advance to the next interval
-            nextDate = calculateNextDate(nextDate, template.getRecurringInterval());
-            catchUpCount++;
-        }
+    private void drainDueTemplates() {
+        drainDueTemplates(result -> {
+        });
+    }
 
-        template.setNextRecurringDate(nextDate);
-        template.setLastProcessed(LocalDateTime.now());
-        transactionRepository.save(template);
+    private void drainDueTemplates(Consumer<ChunkResult> onChunk) {
+        log.info("Starting recurring transaction processing job (chunk size: {})", chunkSize);
 
-        log.info("Recurring template {} processed (caught up {} missed dates). Next occurrence: {}",
-                template.getId(), catchUpCount, nextDate);
-    }
+        LocalDateTime runStartedAt = LocalDateTime.now();
+        Set<UUID> failedIds = new HashSet<>();
+        int chunks = 0, templates = 0, generated = 0;
 
-    private void updateAccountBalance(Account account, Transaction tx) {
-        BigDecimal current = account.getBalance();
-        BigDecimal updated = tx.getType() == TransactionType.INCOME
-                ? current.add(tx.getAmount())
-                : current.subtract(tx.getAmount());
-        account.setBalance(updated);
-        accountRepository.save(account);
-    }
+        while (true) {
+            ChunkResult result;
+            try {
+                result = recurringTransactionProcessor.processNextChunk(runStartedAt, chunkSize, failedIds);
+            } catch (Exception e) {
+                // The chunk was rolled back; stop here rather than re-claiming the same rows.
+                log.error("Recurring transaction chunk {} failed, remaining backlog deferred to next run: {}",
+                        chunks + 1, e.getMessage(), e);
+                break;
+            }
+            if (result.claimed() == 0) {
+                break;
+            }
+            onChunk.accept(result);
+            chunks++;
+            templates += result.claimed();
+            generated += result.generated();
+            failedIds.addAll(result.failedIds());
+        }
 
-    /**
-     * Calculates the next due date anchored to midnight (00:00) of the next
-     * interval boundary. This guarantees the scheduler (which runs every 6h)
-     * always catches the transaction on the correct day, regardless of the
-     * time the original transaction was created.
-     *
-     * e.g. DAILY transaction created at 15:44 → nextRecurringDate = 00:00 next day.
-     * The 06:00 AM scheduler run catches it perfectly.
-     */
-    private LocalDateTime calculateNextDate(LocalDateTime current, RecurringInterval interval) {
-        LocalDate currentDate = current.toLocalDate();
-        return switch (interval) {
-            case DAILY -> currentDate.plusDays(1).atStartOfDay();
-            case WEEKLY -> currentDate.plusWeeks(1).atStartOfDay();
-            case MONTHLY -> currentDate.plusMonths(1).atStartOfDay();
-            case YEARLY -> currentDate.plusYears(1).atStartOfDay();
-        };
+        log.info("Recurring transaction processing complete. Chunks: {}, Templates: {}, Generated: {}, Failed: {}",
+                chunks, templates, generated, failedIds.size());
     }
 }
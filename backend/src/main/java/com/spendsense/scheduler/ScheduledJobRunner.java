@@ -0,0 +1,122 @@
+package com.spendsense.scheduler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs each scheduled job on its own executor so a slow job (e.g. the monthly
+ * insights run making Gemini calls for every user) can never starve the others
+ * on Spring's shared scheduler thread.
+ *
+ * Per job:
+ * - a dedicated pool of {@code scheduling.jobs.<job>.max-concurrency} threads
+ * (default 1), named {@code job-<job>-N}
+ * - overlap prevention: a trigger that fires while the job already has
+ * max-concurrency runs in flight is skipped, not queued
+ * - metrics: scheduled.job.duration (tags job, outcome), scheduled.job.skipped
+ * and the scheduled.job.active gauge
+ *
+ * The scheduled trigger methods only hand work to {@link #submit}, so the
+ * scheduler thread is released immediately.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ScheduledJobRunner {
+
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Submits one run of {@code jobName}.
+     *
+     * @return false if the run was skipped because the job is already at its
+     *         concurrency limit
+     */
+    public boolean submit(String jobName, Runnable task) {
+        Job job = jobs.computeIfAbsent(jobName, this::createJob);
+
+        if (!job.permits().tryAcquire()) {
+            job.skipped().increment();
+            log.warn("Scheduled job '{}' is still running — skipping this trigger", jobName);
+            return false;
+        }
+
+        try {
+            job.executor().execute(() -> run(jobName, job, task));
+        } catch (RuntimeException e) {
+            job.permits().release();
+            throw e;
+        }
+        return true;
+    }
+
+    private void run(String jobName, Job job, Runnable task) {
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            task.run();
+        } catch (Exception e) {
+            outcome = "failure";
+            log.error("Scheduled job '{}' failed: {}", jobName, e.getMessage(), e);
+        } finally {
+            job.permits().release();
+            Timer.builder("scheduled.job.duration")
+                    .description("Wall-clock time of a scheduled job run")
+                    .tag("job", jobName)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Job createJob(String jobName) {
+        int maxConcurrency = Math.max(1, environment.getProperty(
+                "scheduling.jobs." + jobName + ".max-concurrency", Integer.class, 1));
+
+        Semaphore permits = new Semaphore(maxConcurrency);
+        ExecutorService executor = Executors.newFixedThreadPool(maxConcurrency,
+                new CustomizableThreadFactory("job-" + jobName + "-"));
+        Counter skipped = Counter.builder("scheduled.job.skipped")
+                .description("Triggers skipped because the previous run was still in progress")
+                .tag("job", jobName)
+                .register(meterRegistry);
+        meterRegistry.gauge("scheduled.job.active", Tags.of("job", jobName),
+                permits, p -> maxConcurrency - p.availablePermits());
+
+        log.info("Created executor for scheduled job '{}' (max concurrency: {})", jobName, maxConcurrency);
+        return new Job(executor, permits, skipped);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        for (Map.Entry<String, Job> entry : jobs.entrySet()) {
+            ExecutorService executor = entry.getValue().executor();
+            executor.shutdown();
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Scheduled job '{}' did not finish within 30s of shutdown", entry.getKey());
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private record Job(ExecutorService executor, Semaphore permits, Counter skipped) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.spendsense.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Per-endpoint multipart size limits, checked from Content-Length before the
+ * body is parsed.
+ *
+ * The container's spring.servlet.multipart limits are one setting for the whole
+ * application, and they are sized for POST /receipts/scan/batch (ZIP archives of
+ * receipts). Every other multipart request is held to
+ * file.upload.max-request-size here, so a large upload to a single-file endpoint
+ * is refused without being spooled to disk. Such requests must declare their
+ * length; only the batch endpoint accepts a chunked multipart body.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class MultipartSizeFilter extends OncePerRequestFilter {
+
+    private static final String BATCH_SCAN_PATH = "/receipts/scan/batch";
+
+    private final long maxRequestBytes;
+    private final long batchMaxRequestBytes;
+
+    public MultipartSizeFilter(
+            @Value("${file.upload.max-request-size:10MB}") DataSize maxRequestSize,
+            @Value("${receipts.scan.batch.max-request-size:100MB}") DataSize batchMaxRequestSize) {
+        this.maxRequestBytes = maxRequestSize.toBytes();
+        this.batchMaxRequestBytes = batchMaxRequestSize.toBytes();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType == null || !contentType.toLowerCase().startsWith("multipart/");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain chain) throws ServletException, IOException {
+
+        boolean batchScan = request.getRequestURI().equals(request.getContextPath() + BATCH_SCAN_PATH);
+        long limit = batchScan ? batchMaxRequestBytes : maxRequestBytes;
+        long length = request.getContentLengthLong();
+
+        if (length > limit) {
+            reject(response, HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Upload exceeds the maximum request size of " + limit / 1024 / 1024 + " MB");
+            return;
+        }
+        if (length < 0 && !batchScan) {
+            reject(response, HttpStatus.LENGTH_REQUIRED, "Multipart uploads must declare a Content-Length");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType("application/json");
+        response.getWriter().write(
+                "{\"error\":\"" + status.getReasonPhrase() + "\",\"message\":\"" + message + "\"}");
+    }
+}
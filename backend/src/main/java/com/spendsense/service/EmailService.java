@@ -1,7 +1,9 @@
 package com.spendsense.service;
 
+import com.spendsense.config.OutboundHttpClients;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.*;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
@@ -18,7 +20,7 @@ import java.util.Map;
 @Slf4j
 public class EmailService {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
 
     private static final String RESEND_API_URL = "https://api.resend.com/emails";
 
@@ -28,6 +30,13 @@ public class EmailService {
     @Value("${app.mail.from:onboarding@resend.dev}")
     private String fromEmail;
 
+    public EmailService(RestTemplateBuilder restTemplateBuilder, OutboundHttpClients httpClients) {
+        // Pooled, keep-alive connections to Resend (http.client.targets.resend)
+        this.restTemplate = restTemplateBuilder
+                .requestFactory(() -> httpClients.requestFactory("resend"))
+                .build();
+    }
+
     /**
      * Core send method — calls Resend HTTP API
      */
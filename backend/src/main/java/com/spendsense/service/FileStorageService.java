@@ -1,141 +1,176 @@
 package com.spendsense.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.spendsense.exception.BadRequestException;
+import com.spendsense.exception.ResourceNotFoundException;
+import com.spendsense.model.ExportFile;
+import com.spendsense.model.Receipt;
+import com.spendsense.repository.ExportFileRepository;
+import com.spendsense.repository.ReceiptRepository;
+import com.spendsense.service.storage.ResourceRange;
+import com.spendsense.service.storage.StorageBackend;
+import com.spendsense.service.storage.StorageBucket;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.tika.Tika;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 /**
- * Service for file storage operations backed by Appwrite Storage.
- * Receipts and exports are stored in separate Appwrite buckets, eliminating
- * the dependency on local disk (which is ephemeral on Render free tier).
+ * Service for file storage operations. Receipts and exports are kept in separate
+ * buckets of the configured {@link StorageBackend} — Appwrite Storage by default,
+ * since local disk is ephemeral on Render free tier.
  *
  * <p>The "filename" stored in the database uses the format {@code {fileId}.{ext}}.
- * The fileId is a UUID that maps directly to the Appwrite file ID in the bucket.
- * Strip the extension to derive the fileId when making Appwrite API calls.</p>
+ * The fileId is a UUID that maps directly to the file ID in the bucket.
+ * Strip the extension to derive the fileId when calling the backend.</p>
  */
 @Service
 @Slf4j
 public class FileStorageService {
 
-    private final String appwriteEndpoint;
-    private final String receiptsBucketId;
-    private final String exportsBucketId;
     private final List<String> allowedMimeTypes;
     private final long maxFileSizeBytes;
-    private final Tika tika;
-    private final RestTemplate appwriteRestTemplate;
-    private final ObjectMapper objectMapper;
+    private final StorageBackend storage;
+    private final ReceiptRepository receiptRepository;
+    private final ExportFileRepository exportFileRepository;
+    private final LocalFileCache fileCache;
+    private final int exportRetentionHours;
 
     public FileStorageService(
-            @Value("${appwrite.endpoint}") String appwriteEndpoint,
-            @Value("${appwrite.receipts-bucket-id}") String receiptsBucketId,
-            @Value("${appwrite.exports-bucket-id}") String exportsBucketId,
             @Value("${file.upload.max-size-mb:10}") long maxSizeMb,
-            @Qualifier("appwriteRestTemplate") RestTemplate appwriteRestTemplate,
-            ObjectMapper objectMapper) {
+            @Value("${export.temp-file-retention-hours:24}") int exportRetentionHours,
+            StorageBackend storage,
+            ReceiptRepository receiptRepository,
+            ExportFileRepository exportFileRepository,
+            LocalFileCache fileCache) {
 
-        this.appwriteEndpoint = appwriteEndpoint;
-        this.receiptsBucketId = receiptsBucketId;
-        this.exportsBucketId = exportsBucketId;
         this.allowedMimeTypes = Arrays.asList(
                 "image/jpeg", "image/png", "image/jpg",
                 "image/heic", "image/webp", "application/pdf"
         );
         this.maxFileSizeBytes = maxSizeMb * 1024 * 1024;
-        this.tika = new Tika();
-        this.appwriteRestTemplate = appwriteRestTemplate;
-        this.objectMapper = objectMapper;
+        this.storage = storage;
+        this.receiptRepository = receiptRepository;
+        this.exportFileRepository = exportFileRepository;
+        this.fileCache = fileCache;
+        this.exportRetentionHours = exportRetentionHours;
 
-        log.info("FileStorageService initialized with Appwrite endpoint: {}", appwriteEndpoint);
+        log.info("FileStorageService initialized with {}", storage.getClass().getSimpleName());
     }
 
     // ==================== Receipt Methods ====================
 
     /**
-     * Store a receipt in the Appwrite receipts bucket.
+     * Validate a receipt upload (size, filename, MIME type sniffed from the
+     * leading magic bytes) without storing it. Works on the bytes already read,
+     * so the upload is not streamed a second time.
      *
-     * @return stored filename in format "{uuid}.{ext}" â€” use this as the file reference
+     * @return the MIME type detected from the file content
      */
-    public String storeReceipt(MultipartFile file, UUID userId) {
-        validateFile(file);
+    public String validateReceipt(String originalFilename, byte[] data) {
+        validateFile(originalFilename, data);
 
-        String detectedMimeType = detectMimeType(file);
+        String detectedMimeType = sniffMimeType(data);
         validateMimeType(detectedMimeType);
+        return detectedMimeType;
+    }
 
-        String ext = getFileExtension(Objects.requireNonNull(file.getOriginalFilename()));
+    /**
+     * Store an already validated receipt (see {@link #validateReceipt}) in the
+     * receipts bucket.
+     *
+     * @return stored filename in format "{uuid}.{ext}" â€” use this as the file reference
+     */
+    public String storeReceipt(byte[] data, String originalFilename, String mimeType, UUID userId) {
+        String ext = getFileExtension(Objects.requireNonNull(originalFilename));
         String fileId = UUID.randomUUID().toString();
 
-        try {
-            uploadToAppwrite(receiptsBucketId, fileId, file.getBytes(),
-                    file.getOriginalFilename(), detectedMimeType);
-            String storedFilename = ext.isEmpty() ? fileId : fileId + "." + ext;
-            log.info("Receipt stored in Appwrite. fileId={}, user={}", fileId, userId);
-            return storedFilename;
-        } catch (IOException e) {
-            log.error("Could not read file bytes for receipt upload", e);
-            throw new RuntimeException("Could not store receipt file", e);
-        }
+        storage.put(StorageBucket.RECEIPTS, fileId, originalFilename, mimeType, data);
+        // Just-scanned receipts are the ones most likely to be opened next
+        cache(StorageBucket.RECEIPTS, fileId, data);
+        String storedFilename = ext.isEmpty() ? fileId : fileId + "." + ext;
+        receiptRepository.save(Receipt.builder()
+                .fileId(fileId)
+                .userId(userId)
+                .filename(storedFilename)
+                .mimeType(mimeType)
+                .sizeBytes((long) data.length)
+                .sha256(sha256(data))
+                .createdAt(LocalDateTime.now())
+                .build());
+        log.info("Receipt stored. fileId={}, user={}", fileId, userId);
+        return storedFilename;
     }
 
     /**
-     * Retrieve receipt bytes from the Appwrite receipts bucket.
+     * Metadata of a receipt owned by {@code userId}. Someone else's receipt is
+     * reported as not found rather than forbidden, so file ids cannot be probed.
      */
-    public byte[] getReceiptBytes(String filename) {
-        String fileId = extractFileId(filename);
-        return downloadFromAppwrite(receiptsBucketId, fileId);
+    public Receipt getReceipt(String filename, UUID userId) {
+        return receiptRepository.findByFileIdAndUserId(extractFileId(filename), userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Receipt not found"));
     }
 
     /**
-     * Detect MIME type of a stored receipt by fetching it and running Tika.
+     * Content-Type for serving a receipt: the type recorded at upload, or for
+     * receipts stored before that was recorded, the one implied by the extension.
      */
-    public String getFileMimeType(String filename) {
-        try {
-            byte[] bytes = getReceiptBytes(filename);
-            return tika.detect(bytes);
-        } catch (Exception e) {
-            log.warn("Could not detect MIME type for {}: {}", filename, e.getMessage());
-            return "application/octet-stream";
+    public MediaType getMediaType(Receipt receipt) {
+        if (receipt.getMimeType() != null) {
+            return MediaType.parseMediaType(receipt.getMimeType());
         }
+        return MediaTypeFactory.getMediaType(receipt.getFilename()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    /**
+     * Stream a receipt, or one byte range of it, to {@code out} without holding
+     * the file in memory: from the local file cache when present, otherwise from
+     * the storage backend in a single fetch.
+     *
+     * @param range byte range to send, or null for the whole file
+     */
+    public void streamReceipt(Receipt receipt, @Nullable ResourceRange range, OutputStream out) throws IOException {
+        streamStored(StorageBucket.RECEIPTS, receipt.getFileId(), range, out);
     }
 
     /**
-     * Delete a receipt from the Appwrite receipts bucket.
+     * Delete a receipt from storage, along with its metadata.
      */
-    public void deleteReceipt(String filename) {
-        String fileId = extractFileId(filename);
-        deleteFromAppwrite(receiptsBucketId, fileId);
-        log.info("Receipt deleted from Appwrite: {}", filename);
+    public void deleteReceipt(Receipt receipt) {
+        storage.delete(StorageBucket.RECEIPTS, receipt.getFileId());
+        fileCache.invalidate(StorageBucket.RECEIPTS, receipt.getFileId());
+        receiptRepository.delete(receipt);
+        log.info("Receipt deleted: {}", receipt.getFilename());
     }
 
     // ==================== Export Methods ====================
 
     /**
-     * Store an export file (CSV/PDF) in the Appwrite exports bucket.
+     * Store an export file (CSV/PDF) in the exports bucket, recording it in
+     * export_files to expire after export.temp-file-retention-hours.
      *
-     * <p>The filename without its extension is used as the Appwrite fileId.
+     * <p>The filename without its extension is used as the fileId.
      * For example, {@code transactions_20260227_145206.csv} â†’ fileId {@code transactions_20260227_145206}.</p>
      *
      * @return original filename (unchanged), which callers use to retrieve the file
@@ -144,125 +179,131 @@ public class FileStorageService {
         String fileId = stripExtension(filename);
         String mimeType = filename.endsWith(".pdf") ? "application/pdf" : "text/csv";
 
-        uploadToAppwrite(exportsBucketId, fileId, data, filename, mimeType);
-        log.info("Export stored in Appwrite. filename={}", filename);
+        storage.put(StorageBucket.EXPORTS, fileId, filename, mimeType, data);
+        LocalDateTime now = LocalDateTime.now();
+        exportFileRepository.save(ExportFile.builder()
+                .fileId(fileId)
+                .filename(filename)
+                .mimeType(mimeType)
+                .sizeBytes((long) data.length)
+                .createdAt(now)
+                .expiresAt(now.plusHours(exportRetentionHours))
+                .build());
+        // The emailed link is usually opened within minutes
+        cache(StorageBucket.EXPORTS, fileId, data);
+        log.info("Export stored. filename={}", filename);
         return filename;
     }
 
     /**
-     * Delete export files older than {@code retentionHours} hours from the exports bucket.
-     * Lists all files in the bucket, checks their Appwrite {@code $createdAt} timestamp,
-     * and deletes those that have exceeded the retention window.
+     * Delete every export file past its expires_at, with its export_files row.
+     * Expired rows are read in keyset pages of {@code pageSize}; each page's
+     * files are deleted from storage at most {@code concurrency} at a time (on
+     * virtual threads) before its rows are removed. A file whose storage delete
+     * fails is logged by the backend and left to {@link #deleteUntrackedExports}.
      *
      * @return number of files deleted
      */
-    public int deleteOldExports(int retentionHours) {
+    public int deleteExpiredExports(int pageSize, int concurrency) {
+        LocalDateTime now = LocalDateTime.now();
+        Semaphore inFlight = new Semaphore(concurrency);
         int deleted = 0;
-        try {
-            Instant cutoff = Instant.now().minusSeconds((long) retentionHours * 3600);
-
-            String url = appwriteEndpoint + "/storage/buckets/" + exportsBucketId
-                    + "/files?queries[]=limit(100)";
-            String response = appwriteRestTemplate.getForObject(url, String.class);
-            if (response == null) {
-                log.warn("Empty response when listing exports bucket for cleanup");
-                return 0;
-            }
-
-            JsonNode root = objectMapper.readTree(response);
-            for (JsonNode fileNode : root.path("files")) {
-                String fileId = fileNode.path("$id").asText();
-                String createdAtRaw = fileNode.path("$createdAt").asText();
-                try {
-                    Instant created = Instant.parse(createdAtRaw);
-                    if (created.isBefore(cutoff)) {
-                        deleteFromAppwrite(exportsBucketId, fileId);
-                        deleted++;
-                        log.debug("Deleted expired export: {}", fileId);
-                    }
-                } catch (Exception e) {
-                    log.warn("Could not parse $createdAt '{}' for file '{}': {}",
-                            createdAtRaw, fileId, e.getMessage());
+        String cursor = "";
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<String> page;
+            while (!(page = exportFileRepository.findExpiredIdsAfter(now, cursor, pageSize)).isEmpty()) {
+                List<CompletableFuture<Void>> deletes = new ArrayList<>(page.size());
+                for (String fileId : page) {
+                    inFlight.acquire();
+                    deletes.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            storage.delete(StorageBucket.EXPORTS, fileId);
+                            fileCache.invalidate(StorageBucket.EXPORTS, fileId);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }, executor));
                 }
+                CompletableFuture.allOf(deletes.toArray(CompletableFuture[]::new)).join();
+                deleted += exportFileRepository.deleteByFileIdIn(page);
+                cursor = page.getLast();
             }
-        } catch (Exception e) {
-            log.error("Error during export cleanup", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Export expiry interrupted after {} file(s); the rest go on the next run", deleted);
         }
-        log.info("Export cleanup complete. Deleted {} expired file(s).", deleted);
+        log.info("Export expiry complete. Deleted {} expired file(s).", deleted);
         return deleted;
     }
 
     /**
-     * Get export file bytes from the Appwrite exports bucket.
+     * Safety net for export files export_files does not know about (stored before
+     * it existed, or whose storage delete failed): deletes files older than
+     * {@code retentionHours} hours from the first page of the exports bucket
+     * listing. Tracked files are normally gone by then, so that page holds
+     * little else.
+     *
+     * @return number of files deleted
      */
-    public byte[] getExportBytes(String filename) {
-        String fileId = stripExtension(filename);
-        return downloadFromAppwrite(exportsBucketId, fileId);
-    }
-
-    // ==================== Appwrite REST Helpers ====================
-
-    private void uploadToAppwrite(String bucketId, String fileId,
-                                  byte[] data, String originalFilename, String mimeType) {
-        String url = appwriteEndpoint + "/storage/buckets/" + bucketId + "/files";
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-
-        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("fileId", fileId);
-        body.add("file", new NamedByteArrayResource(data, originalFilename));
-
-        HttpEntity<MultiValueMap<String, Object>> request = new HttpEntity<>(body, headers);
-        appwriteRestTemplate.postForObject(url, request, String.class);
-    }
-
-    private byte[] downloadFromAppwrite(String bucketId, String fileId) {
-        String url = appwriteEndpoint + "/storage/buckets/" + bucketId
-                + "/files/" + fileId + "/download";
-        ResponseEntity<byte[]> response = appwriteRestTemplate.getForEntity(url, byte[].class);
-        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-            throw new RuntimeException("Failed to download file from Appwrite: " + fileId);
-        }
-        return response.getBody();
-    }
-
-    private void deleteFromAppwrite(String bucketId, String fileId) {
+    public int deleteUntrackedExports(int retentionHours) {
+        int deleted = 0;
         try {
-            String url = appwriteEndpoint + "/storage/buckets/" + bucketId + "/files/" + fileId;
-            appwriteRestTemplate.delete(url);
-        } catch (HttpClientErrorException.NotFound e) {
-            log.warn("File not found in Appwrite (skipping delete): {}", fileId);
+            Instant cutoff = Instant.now().minusSeconds((long) retentionHours * 3600);
+            for (String fileId : storage.listExpired(StorageBucket.EXPORTS, cutoff, 100)) {
+                storage.delete(StorageBucket.EXPORTS, fileId);
+                fileCache.invalidate(StorageBucket.EXPORTS, fileId);
+                exportFileRepository.deleteById(fileId);
+                deleted++;
+                log.debug("Deleted untracked export: {}", fileId);
+            }
         } catch (Exception e) {
-            log.error("Error deleting file '{}' from Appwrite bucket '{}': {}",
-                    fileId, bucketId, e.getMessage());
+            log.error("Error during untracked export cleanup", e);
         }
+        log.info("Untracked export cleanup complete. Deleted {} file(s).", deleted);
+        return deleted;
     }
 
-    // ==================== Inner class: named multipart resource ====================
+    /**
+     * Recorded metadata of an export, if it was stored after export_files existed.
+     */
+    public Optional<ExportFile> getExport(String filename) {
+        return exportFileRepository.findById(stripExtension(filename));
+    }
 
     /**
-     * ByteArrayResource that exposes a filename for multipart uploads,
-     * allowing RestTemplate to set the correct Content-Disposition header.
+     * Stream an export file to {@code out}, from the local file cache when present,
+     * otherwise from the storage backend.
      */
-    private static class NamedByteArrayResource extends ByteArrayResource {
-        private final String filename;
+    public void streamExport(String filename, OutputStream out) throws IOException {
+        streamStored(StorageBucket.EXPORTS, stripExtension(filename), null, out);
+    }
+
+    // ==================== Local file cache ====================
 
-        NamedByteArrayResource(byte[] data, String filename) {
-            super(data);
-            this.filename = filename != null ? filename : "file";
+    /** The cache only pays off in front of a remote backend. */
+    private void cache(StorageBucket bucket, String fileId, byte[] data) {
+        if (storage.isRemote()) {
+            fileCache.put(bucket, fileId, data);
         }
+    }
 
-        @Override
-        public String getFilename() {
-            return filename;
+    private void streamStored(StorageBucket bucket, String fileId, @Nullable ResourceRange range, OutputStream out)
+            throws IOException {
+        if (!storage.isRemote()) {
+            storage.read(bucket, fileId, range, out);
+        } else if (fileCache.transferTo(bucket, fileId, range, out)) {
+            log.debug("Served {}/{} from the local file cache", bucket, fileId);
+        } else if (range == null) {
+            fileCache.copyThrough(bucket, fileId, out, tee -> storage.read(bucket, fileId, null, tee));
+        } else {
+            storage.read(bucket, fileId, range, out);
         }
     }
 
     // ==================== Utility Methods ====================
 
     /**
-     * Extracts the Appwrite fileId from a stored filename.
+     * Extracts the storage fileId from a stored filename.
      * Format is "{fileId}.{ext}" â€” strip the last extension to get the fileId.
      */
     private String extractFileId(String filename) {
@@ -272,6 +313,14 @@ public class FileStorageService {
         return stripExtension(filename);
     }
 
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     private String stripExtension(String filename) {
         if (filename == null) return "";
         int lastDot = filename.lastIndexOf('.');
@@ -280,27 +329,62 @@ public class FileStorageService {
 
     // ==================== Validation Methods ====================
 
-    private void validateFile(MultipartFile file) {
-        if (file == null || file.isEmpty()) {
+    private void validateFile(String filename, byte[] data) {
+        if (data == null || data.length == 0) {
             throw new BadRequestException("File is empty");
         }
-        if (file.getSize() > maxFileSizeBytes) {
+        if (data.length > maxFileSizeBytes) {
             throw new BadRequestException(
                     String.format("File size exceeds maximum limit of %d MB",
                             maxFileSizeBytes / 1024 / 1024));
         }
-        String filename = file.getOriginalFilename();
         if (filename == null || filename.contains("\0") || filename.contains("..")) {
             throw new BadRequestException("Invalid filename");
         }
     }
 
-    private String detectMimeType(MultipartFile file) {
-        try {
-            return tika.detect(file.getInputStream());
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to detect MIME type", e);
+    /**
+     * MIME type from the file signature, for the formats receipts are allowed in;
+     * anything else is reported as application/octet-stream (and rejected).
+     */
+    private static String sniffMimeType(byte[] data) {
+        if (startsWith(data, 0, (byte) 0xFF, (byte) 0xD8, (byte) 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(data, 0, (byte) 0x89, (byte) 'P', (byte) 'N', (byte) 'G',
+                (byte) 0x0D, (byte) 0x0A, (byte) 0x1A, (byte) 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(data, 0, ascii("RIFF")) && startsWith(data, 8, ascii("WEBP"))) {
+            return "image/webp";
+        }
+        if (startsWith(data, 0, ascii("%PDF-"))) {
+            return "application/pdf";
+        }
+        // ISO-BMFF: size(4) "ftyp" brand(4)
+        if (startsWith(data, 4, ascii("ftyp")) && data.length >= 12) {
+            String brand = new String(data, 8, 4, StandardCharsets.US_ASCII);
+            if (List.of("heic", "heix", "hevc", "hevx", "mif1", "msf1").contains(brand)) {
+                return "image/heic";
+            }
+        }
+        return "application/octet-stream";
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte... signature) {
+        if (data.length < offset + signature.length) {
+            return false;
         }
+        for (int i = 0; i < signature.length; i++) {
+            if (data[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
     }
 
     private void validateMimeType(String mimeType) {
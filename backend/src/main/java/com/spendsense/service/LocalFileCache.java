@@ -0,0 +1,269 @@
+package com.spendsense.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.spendsense.service.storage.ResourceRange;
+import com.spendsense.service.storage.StorageBucket;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Size-bounded on-disk cache of stored files, in front of a remote {@link StorageBackend}.
+ *
+ * Index: Caffeine, weighted by file size (W-TinyLFU admission and eviction),
+ * so one-off downloads do not push out receipts that are viewed again and again.
+ * Evicted or invalidated entries have their file deleted. Every write goes to a
+ * fresh file that is moved into place, so a reader never sees a partial file and
+ * a reader that already opened an evicted file keeps reading it.
+ *
+ * The directory is instance-local and wiped on startup — the index is not persisted,
+ * and on Render the disk does not survive a deploy anyway.
+ */
+@Service
+@Slf4j
+public class LocalFileCache {
+
+    /** Stored file ids are UUIDs or export names; anything else is never cached */
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9_-]{1,100}");
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxFileSizeBytes;
+    private final Cache<String, CachedFile> files;
+
+    private record CachedFile(Path path, int size) {
+    }
+
+    public LocalFileCache(
+            @Value("${storage.cache.enabled:true}") boolean enabled,
+            @Value("${storage.cache.directory:${java.io.tmpdir}/spendsense-file-cache}") String directory,
+            @Value("${storage.cache.max-size:512MB}") DataSize maxSize,
+            @Value("${storage.cache.max-file-size:20MB}") DataSize maxFileSize,
+            MeterRegistry meterRegistry) {
+
+        this.directory = Path.of(directory);
+        this.maxFileSizeBytes = Math.min(maxFileSize.toBytes(), Integer.MAX_VALUE);
+        this.files = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, CachedFile file) -> file.size())
+                .removalListener((String key, CachedFile file, RemovalCause cause) -> {
+                    if (file != null) {
+                        deleteQuietly(file.path());
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, files, "storageFiles");
+
+        boolean ready = false;
+        if (enabled) {
+            try {
+                FileSystemUtils.deleteRecursively(this.directory);
+                Files.createDirectories(this.directory);
+                ready = true;
+            } catch (IOException e) {
+                log.warn("File cache disabled: cannot use directory {}: {}", this.directory, e.getMessage());
+            }
+        }
+        this.enabled = ready;
+        log.info("Local file cache {} (directory={}, max-size={})",
+                ready ? "enabled" : "disabled", this.directory, maxSize);
+    }
+
+    /** Caches a file whose content is already in memory (fresh uploads and exports). Best-effort. */
+    public void put(StorageBucket bucket, String fileId, byte[] data) {
+        if (!admits(fileId) || data.length > maxFileSizeBytes) {
+            return;
+        }
+        try {
+            Path tmp = Files.createTempFile(directory, fileId, ".part");
+            Files.write(tmp, data);
+            register(bucket, fileId, tmp, data.length);
+        } catch (IOException e) {
+            log.warn("Could not cache {}/{}: {}", bucket, fileId, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a whole-file download into {@code out}, keeping a copy in the cache in
+     * the same pass so the first viewer is not slowed down. The copy is dropped if
+     * the download fails or outgrows the per-file limit.
+     */
+    public void copyThrough(StorageBucket bucket, String fileId, OutputStream out, Download download)
+            throws IOException {
+        if (!admits(fileId)) {
+            download.writeTo(out);
+            return;
+        }
+        Path tmp = Files.createTempFile(directory, fileId, ".part");
+        boolean complete = false;
+        try (TeeOutputStream tee = new TeeOutputStream(out, Files.newOutputStream(tmp), maxFileSizeBytes)) {
+            download.writeTo(tee);
+            if (tee.isCopyComplete()) {
+                try {
+                    tee.closeCopy();
+                    register(bucket, fileId, tmp, tee.getCopied());
+                    complete = true;
+                } catch (IOException e) {
+                    log.warn("Could not cache {}/{}: {}", bucket, fileId, e.getMessage());
+                }
+            }
+        } finally {
+            if (!complete) {
+                deleteQuietly(tmp);
+            }
+        }
+    }
+
+    /**
+     * Sends a cached file, or one byte range of it, to {@code out} with
+     * {@link FileChannel#transferTo}.
+     *
+     * @return false if the file is not cached, in which case nothing was written
+     */
+    public boolean transferTo(StorageBucket bucket, String fileId, @Nullable ResourceRange range,
+                              OutputStream out) throws IOException {
+        if (!enabled) {
+            return false;
+        }
+        String key = key(bucket, fileId);
+        CachedFile file = files.getIfPresent(key);
+        if (file == null) {
+            return false;
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file.path(), StandardOpenOption.READ);
+        } catch (NoSuchFileException evicted) {
+            // Evicted between lookup and open — or the directory was cleaned under us
+            files.asMap().remove(key, file);
+            return false;
+        }
+        try (channel) {
+            long position = range != null ? range.start() : 0;
+            long end = range != null ? Math.min(range.end() + 1, file.size()) : file.size();
+            WritableByteChannel target = Channels.newChannel(out);
+            while (position < end) {
+                position += channel.transferTo(position, end - position, target);
+            }
+        }
+        return true;
+    }
+
+    public void invalidate(StorageBucket bucket, String fileId) {
+        files.invalidate(key(bucket, fileId));
+    }
+
+    /** A download that writes the whole file to the given stream. */
+    @FunctionalInterface
+    public interface Download {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private boolean admits(String fileId) {
+        return enabled && SAFE_ID.matcher(fileId).matches();
+    }
+
+    private void register(StorageBucket bucket, String fileId, Path tmp, long size) throws IOException {
+        // Unique name per write: a replaced entry's file is deleted without touching the new one
+        Path target = directory.resolve(fileId + "-" + UUID.randomUUID());
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        files.put(key(bucket, fileId), new CachedFile(target, (int) size));
+    }
+
+    private static String key(StorageBucket bucket, String fileId) {
+        return bucket + "/" + fileId;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Could not delete cached file {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes to the client and to the cache copy; the copy is given up, without
+     * affecting the client, once it would exceed the per-file limit or fails.
+     */
+    private static final class TeeOutputStream extends FilterOutputStream {
+
+        private final OutputStream copy;
+        private final long maxCopyBytes;
+        private long copied;
+        private boolean copyFailed;
+        private boolean copyClosed;
+
+        TeeOutputStream(OutputStream out, OutputStream copy, long maxCopyBytes) {
+            super(out);
+            this.copy = copy;
+            this.maxCopyBytes = maxCopyBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copyFailed) {
+                return;
+            }
+            copied += len;
+            if (copied > maxCopyBytes) {
+                copyFailed = true;
+                return;
+            }
+            try {
+                copy.write(b, off, len);
+            } catch (IOException e) {
+                copyFailed = true;
+            }
+        }
+
+        boolean isCopyComplete() {
+            return !copyFailed;
+        }
+
+        long getCopied() {
+            return copied;
+        }
+
+        void closeCopy() throws IOException {
+            copyClosed = true;
+            copy.close();
+        }
+
+        /** Leaves the client stream open — the servlet container owns it. */
+        @Override
+        public void close() throws IOException {
+            if (!copyClosed) {
+                copy.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.spendsense.service;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Published by TransactionService when a recurring template is created, edited
+ * or deleted. {@code nextRecurringDate} is null when the template was deleted or
+ * is no longer recurring. Consumed after commit by RecurringDueQueue.
+ */
+public record RecurringTemplateChangedEvent(UUID templateId, LocalDateTime nextRecurringDate) {
+}
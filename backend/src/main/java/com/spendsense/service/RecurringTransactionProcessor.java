@@ -0,0 +1,244 @@
+package com.spendsense.service;
+
+import com.spendsense.model.Transaction;
+import com.spendsense.model.enums.RecurringInterval;
+import com.spendsense.model.enums.TransactionStatus;
+import com.spendsense.model.enums.TransactionType;
+import com.spendsense.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Materialises due recurring transactions one chunk at a time.
+ *
+ * Each call claims up to {@code chunkSize} due templates with
+ * {@code FOR UPDATE SKIP LOCKED} and runs in its own transaction, so a long
+ * backlog never holds locks for the whole run and several workers can share it.
+ * Generated occurrences are written with multi-row INSERTs and each account
+ * receives one summed balance delta per chunk instead of one UPDATE per
+ * occurrence. The unique (recurring_template_id, date) index turns replays into
+ * no-ops; RETURNING reports exactly which rows were inserted, and only those
+ * contribute to the balance delta (JDBC batch update counts cannot be trusted
+ * for this — with reWriteBatchedInserts they come back as SUCCESS_NO_INFO).
+ *
+ * A template whose planning fails is left untouched — neither nextRecurringDate
+ * nor lastProcessed moves — and is reported in {@link ChunkResult#failedIds()}
+ * so the caller can exclude it from the rest of the run.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RecurringTransactionProcessor {
+
+    /** Safety limit on missed occurrences generated per template per run. */
+    private static final int MAX_CATCHUP = 30;
+
+    /** Stands in for an empty exclusion list — {@code NOT IN ()} is not valid SQL */
+    private static final Set<UUID> NO_EXCLUSIONS = Set.of(new UUID(0L, 0L));
+
+    /** Rows per multi-row INSERT; 12 parameters each keeps a statement well under PostgreSQL's 65535 */
+    private static final int INSERT_SLICE_SIZE = 500;
+
+    private static final String INSERT_OCCURRENCES_SQL_PREFIX = """
+            INSERT INTO transactions (id, type, amount, description, date, category, is_recurring,
+                                      status, user_id, account_id, recurring_template_id,
+                                      created_at, updated_at)
+            VALUES\s""";
+
+    private static final String OCCURRENCE_VALUES = "(?, ?, ?, ?, ?, ?, false, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_OCCURRENCES_SQL_SUFFIX = """
+
+            ON CONFLICT (recurring_template_id, date) WHERE recurring_template_id IS NOT NULL DO NOTHING
+            RETURNING recurring_template_id, date
+            """;
+
+    private static final String APPLY_BALANCE_DELTA_SQL =
+            "UPDATE accounts SET balance = balance + ?, updated_at = ? WHERE id = ?";
+
+    private final TransactionRepository transactionRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Claims and processes the next chunk of due templates.
+     *
+     * @param runStartedAt start of the current run — used as the due cut-off and to
+     *                     skip templates this run has already processed
+     * @param excludedIds  templates that already failed in this run
+     * @return what the chunk did; {@code claimed == 0} means the backlog is drained
+     */
+    @Transactional
+    public ChunkResult processNextChunk(LocalDateTime runStartedAt, int chunkSize, Set<UUID> excludedIds) {
+        List<Transaction> templates = transactionRepository.claimDueRecurringTemplates(
+                runStartedAt, runStartedAt, excludedIds.isEmpty() ? NO_EXCLUSIONS : excludedIds, chunkSize);
+        if (templates.isEmpty()) {
+            return new ChunkResult(0, 0, List.of());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Occurrence> occurrences = new ArrayList<>();
+        List<UUID> failedIds = new ArrayList<>();
+
+        for (Transaction template : templates) {
+            List<Occurrence> planned = new ArrayList<>();
+            LocalDateTime nextDate;
+            try {
+                nextDate = planOccurrences(template, runStartedAt, planned);
+            } catch (Exception e) {
+                // Leave the template as it was; the caller keeps it out of the rest of the run
+                failedIds.add(template.getId());
+                log.error("Failed to plan recurring transaction {}: {}", template.getId(), e.getMessage(), e);
+                continue;
+            }
+            occurrences.addAll(planned);
+            template.setNextRecurringDate(nextDate);
+            template.setLastProcessed(now);
+        }
+
+        int generated = insertOccurrences(occurrences, now);
+
+        log.info("Recurring chunk processed: {} template(s), {} occurrence(s) generated, {} failed",
+                templates.size(), generated, failedIds.size());
+        return new ChunkResult(templates.size(), generated, failedIds);
+    }
+
+    /**
+     * Appends every missed occurrence of {@code template} before {@code cutoff} to
+     * {@code out} and returns the template's new nextRecurringDate.
+     */
+    private LocalDateTime planOccurrences(Transaction template, LocalDateTime cutoff, List<Occurrence> out) {
+        LocalDateTime nextDate = template.getNextRecurringDate();
+        int catchUpCount = 0;
+
+        while (nextDate != null && nextDate.isBefore(cutoff) && catchUpCount < MAX_CATCHUP) {
+            // Use the target date for the transaction, not 'now', so historical records are accurate
+            out.add(new Occurrence(template, nextDate));
+            nextDate = calculateNextDate(nextDate, template.getRecurringInterval());
+            catchUpCount++;
+        }
+
+        log.debug("Recurring template {} planned {} missed date(s). Next occurrence: {}",
+                template.getId(), catchUpCount, nextDate);
+        return nextDate;
+    }
+
+    /**
+     * Inserts the planned occurrences and applies one summed balance delta per
+     * account for the rows that were actually inserted.
+     */
+    private int insertOccurrences(List<Occurrence> occurrences, LocalDateTime now) {
+        if (occurrences.isEmpty()) {
+            return 0;
+        }
+
+        Map<OccurrenceKey, Occurrence> byKey = new HashMap<>();
+        for (Occurrence occurrence : occurrences) {
+            byKey.put(new OccurrenceKey(occurrence.template().getId(), occurrence.date()), occurrence);
+        }
+
+        Map<UUID, BigDecimal> deltaByAccount = new HashMap<>();
+        int inserted = 0;
+        for (int from = 0; from < occurrences.size(); from += INSERT_SLICE_SIZE) {
+            List<Occurrence> slice = occurrences.subList(from, Math.min(from + INSERT_SLICE_SIZE, occurrences.size()));
+            // Conflicting (template, date) rows already exist and are not returned
+            List<OccurrenceKey> insertedKeys = jdbcTemplate.query(insertSql(slice.size()),
+                    (rs, rowNum) -> new OccurrenceKey(
+                            rs.getObject("recurring_template_id", UUID.class),
+                            rs.getObject("date", LocalDateTime.class)),
+                    occurrenceParameters(slice, now));
+
+            for (OccurrenceKey key : insertedKeys) {
+                Transaction template = byKey.get(key).template();
+                BigDecimal signed = template.getType() == TransactionType.INCOME
+                        ? template.getAmount()
+                        : template.getAmount().negate();
+                deltaByAccount.merge(template.getAccount().getId(), signed, BigDecimal::add);
+            }
+            inserted += insertedKeys.size();
+        }
+
+        if (!deltaByAccount.isEmpty()) {
+            List<Object[]> deltas = new ArrayList<>(deltaByAccount.size());
+            deltaByAccount.forEach((accountId, delta) -> deltas.add(new Object[] { delta, now, accountId }));
+            jdbcTemplate.batchUpdate(APPLY_BALANCE_DELTA_SQL, deltas);
+        }
+
+        if (inserted < occurrences.size()) {
+            log.info("Skipped {} recurring occurrence(s) that were already generated",
+                    occurrences.size() - inserted);
+        }
+        return inserted;
+    }
+
+    private static String insertSql(int rows) {
+        return INSERT_OCCURRENCES_SQL_PREFIX
+                + String.join(", ", Collections.nCopies(rows, OCCURRENCE_VALUES))
+                + INSERT_OCCURRENCES_SQL_SUFFIX;
+    }
+
+    private static Object[] occurrenceParameters(List<Occurrence> occurrences, LocalDateTime now) {
+        List<Object> params = new ArrayList<>(occurrences.size() * 12);
+        for (Occurrence occurrence : occurrences) {
+            Transaction template = occurrence.template();
+            Collections.addAll(params,
+                    UUID.randomUUID(),
+                    template.getType().name(),
+                    template.getAmount(),
+                    template.getDescription(),
+                    occurrence.date(),
+                    template.getCategory(),
+                    TransactionStatus.COMPLETED.name(),
+                    // getId() on a lazy proxy does not initialise it — no extra SELECTs
+                    template.getUser().getId(),
+                    template.getAccount().getId(),
+                    template.getId(),
+                    now,
+                    now);
+        }
+        return params.toArray();
+    }
+
+    /**
+     * Calculates the next due date anchored to midnight (00:00) of the next
+     * interval boundary, regardless of the time the original transaction was
+     * created.
+     *
+     * e.g. DAILY transaction created at 15:44 → nextRecurringDate = 00:00 next day.
+     */
+    private LocalDateTime calculateNextDate(LocalDateTime current, RecurringInterval interval) {
+        LocalDate currentDate = current.toLocalDate();
+        return switch (interval) {
+            case DAILY -> currentDate.plusDays(1).atStartOfDay();
+            case WEEKLY -> currentDate.plusWeeks(1).atStartOfDay();
+            case MONTHLY -> currentDate.plusMonths(1).atStartOfDay();
+            case YEARLY -> currentDate.plusYears(1).atStartOfDay();
+        };
+    }
+
+    private record Occurrence(Transaction template, LocalDateTime date) {
+    }
+
+    private record OccurrenceKey(UUID templateId, LocalDateTime date) {
+    }
+
+    public record ChunkResult(int claimed, int generated, List<UUID> failedIds) {
+
+        public int failed() {
+            return failedIds.size();
+        }
+    }
+}
@@ -15,6 +15,7 @@ import com.spendsense.repository.AccountRepository;
 import com.spendsense.repository.TransactionRepository;
 import com.spendsense.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -33,6 +34,7 @@ public class TransactionService {
     private final AccountRepository accountRepository;
     private final UserRepository userRepository;
     private final TransactionMapper transactionMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     public TransactionResponse createTransaction(UUID userId, CreateTransactionRequest request) {
         User user = userRepository.findById(userId)
@@ -52,6 +54,7 @@ public class TransactionService {
         }
         updateAccountBalance(account, transaction);
         Transaction saved = transactionRepository.save(transaction);
+        publishRecurringChange(saved);
         return transactionMapper.toResponse(saved);
     }
 
@@ -80,6 +83,7 @@ public class TransactionService {
     public TransactionResponse updateTransaction(UUID userId, UUID transactionId, UpdateTransactionRequest request) {
         Transaction transaction = transactionRepository.findByIdAndUserId(transactionId, userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Transaction not found"));
+        boolean wasRecurring = Boolean.TRUE.equals(transaction.getIsRecurring());
         revertAccountBalance(transaction.getAccount(), transaction);
         if (request.getType() != null) {
             transaction.setType(request.getType());
@@ -106,9 +110,17 @@ public class TransactionService {
             }
             transaction.setNextRecurringDate(calculateNextRecurringDate(
                     request.getDate(), request.getRecurringInterval()));
+        } else if (Boolean.FALSE.equals(request.getIsRecurring())) {
+            transaction.setIsRecurring(false);
+            transaction.setNextRecurringDate(null);
         }
         updateAccountBalance(transaction.getAccount(), transaction);
         Transaction saved = transactionRepository.save(transaction);
+        if (wasRecurring && !Boolean.TRUE.equals(saved.getIsRecurring())) {
+            eventPublisher.publishEvent(new RecurringTemplateChangedEvent(saved.getId(), null));
+        } else {
+            publishRecurringChange(saved);
+        }
         return transactionMapper.toResponse(saved);
     }
 
@@ -117,6 +129,17 @@ public class TransactionService {
                 .orElseThrow(() -> new ResourceNotFoundException("Transaction not found"));
         revertAccountBalance(transaction.getAccount(), transaction);
         transactionRepository.delete(transaction);
+        if (Boolean.TRUE.equals(transaction.getIsRecurring())) {
+            eventPublisher.publishEvent(new RecurringTemplateChangedEvent(transactionId, null));
+        }
+    }
+
+    /** Keeps RecurringDueQueue in step with template edits (applied after commit). */
+    private void publishRecurringChange(Transaction transaction) {
+        if (Boolean.TRUE.equals(transaction.getIsRecurring())) {
+            eventPublisher.publishEvent(new RecurringTemplateChangedEvent(
+                    transaction.getId(), transaction.getNextRecurringDate()));
+        }
     }
 
     private void revertAccountBalance(Account account, Transaction transaction) {
@@ -0,0 +1,66 @@
+package com.spendsense.service.ai;
+
+/**
+ * Concurrency limit for Gemini calls that learns what the upstream can sustain
+ * (AIMD, driven by upstream push-back only).
+ *
+ * - a successful call while the limit is actually being used grows the limit
+ * additively (+1/limit per call, i.e. about +1 per "window" of calls)
+ * - 429/503/timeouts halve it
+ *
+ * Latency is deliberately not a signal: how long Gemini takes depends on the
+ * model and on how much it writes (a receipt scan vs. a full insights report),
+ * so a slow answer says nothing about queueing upstream.
+ *
+ * The limit never exceeds {@code maxLimit}, which doubles as the bulkhead, and
+ * never drops below 1. Callers that cannot get a permit are rejected immediately.
+ */
+final class AdaptiveConcurrencyLimiter {
+
+    private static final double DROP_BACKOFF = 0.5;
+
+    private final int maxLimit;
+
+    private double limit;
+    private int inFlight;
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.clamp(initialLimit, 1, this.maxLimit);
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /** The call completed normally. */
+    synchronized void onSuccess() {
+        int concurrent = inFlight--;
+        if (concurrent >= limit / 2) {
+            // Only grow when the current limit is actually being exercised
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+    /** The upstream pushed back (429/503) or timed out. */
+    synchronized void onDropped() {
+        inFlight--;
+        limit = Math.max(1, limit * DROP_BACKOFF);
+    }
+
+    /** The call ended in a way that says nothing about upstream capacity. */
+    synchronized void onIgnored() {
+        inFlight--;
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+}
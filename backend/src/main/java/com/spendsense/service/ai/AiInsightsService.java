@@ -13,22 +13,32 @@ import com.spendsense.repository.AiInsightRepository;
 import com.spendsense.repository.BudgetRepository;
 import com.spendsense.repository.TransactionRepository;
 import com.spendsense.repository.UserRepository;
+import com.spendsense.exception.GeminiUnavailableException;
 import com.spendsense.exception.ResourceNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -37,8 +47,13 @@ import java.util.stream.Collectors;
  * Persistence strategy (3-layer):
  * 1. @Cacheable("aiInsights") → Redis 48h TTL
  * 2. DB (ai_insights table) → checked on Redis miss, valid for 48h after
- * generation
- * 3. Gemini API call → only on DB miss or expired row
+ * generation; an expired row whose context hash still matches the user's
+ * current compact context is extended instead of regenerated
+ * 3. Gemini API call → only on DB miss or changed context, and only if
+ * {@link PromptResultCache} has no answer for the exact same prompt
+ *
+ * The controller-facing *Async methods return CompletableFuture and never hold
+ * a servlet thread while Gemini is working.
  */
 @Service
 @Slf4j
@@ -46,149 +61,384 @@ import java.util.stream.Collectors;
 public class AiInsightsService {
 
     private final GeminiClientService geminiClient;
+    private final PromptResultCache promptResultCache;
+    private final SpendingAnomalyDetector anomalyDetector;
     private final TransactionRepository transactionRepository;
     private final BudgetRepository budgetRepository;
     private final AiInsightRepository aiInsightRepository;
     private final UserRepository userRepository;
     private final ObjectMapper objectMapper;
+    private final CacheManager cacheManager;
+    private final TransactionTemplate transactionTemplate;
 
     private static final int INSIGHTS_TTL_HOURS = 48;
 
+    private static final String NOT_ENOUGH_DATA_FOR_ANOMALIES =
+            "Need more transaction data to detect anomalies (at least 10 transactions)";
+
+    @Value("${ai.anomalies.gemini-phrasing:false}")
+    private boolean anomalyGeminiPhrasing;
+
     // ==================== Main Insights ====================
 
     /**
      * Get spending insights for a user.
      * Lookup order: Redis (48h TTL) → DB (expiresAt check) → Gemini API
+     * Blocking — used by the monthly insights job.
+     *
+     * @param beforeGeminiCall runs (and may block) only if Gemini is actually
+     *                         called, after every cache layer missed
      */
-    @Cacheable(value = "aiInsights", key = "#userId.toString()")
+    // Placeholders (no budget recommendations) are served but never cached
+    @Cacheable(value = "aiInsights", key = "#userId.toString()",
+            unless = "#result == null || #result.budgetRecommendations == null")
     @Transactional
-    public SpendingInsightResponse generateSpendingInsights(UUID userId) {
+    public SpendingInsightResponse generateSpendingInsights(UUID userId, Runnable beforeGeminiCall) {
         log.info("[CACHE LAYER] ❌ Redis MISS for user: {}. Checking Database...", userId);
+        InsightsPlan plan = null;
+        try {
+            plan = planInsights(userId);
+            if (plan.ready() != null) {
+                return plan.ready();
+            }
+            SpendingInsightResponse response = parseAnswer(plan,
+                    promptResultCache.generate(GeminiFeature.INSIGHTS, plan.prompt(), beforeGeminiCall).block());
+            persistInsights(userId, response, plan.contextHash());
+            return response;
+        } catch (GeminiUnavailableException e) {
+            // Don't let @Cacheable pin a placeholder for 48h while Gemini is shedding load
+            throw e;
+        } catch (Exception e) {
+            log.error("Error generating AI insights for user: {}", userId, e);
+            return insightsUnavailable(plan != null ? plan.anomalies() : null);
+        }
+    }
 
-        // DB check: valid (non-expired) row?
-        Optional<AiInsight> existing = aiInsightRepository.findByUserId(userId);
-        if (existing.isPresent() && existing.get().getExpiresAt().isAfter(LocalDateTime.now())) {
-            log.info("[CACHE LAYER] ✅ Database HIT for user: {} (expires: {})", userId, existing.get().getExpiresAt());
-            return toResponse(existing.get());
+    /**
+     * Non-blocking variant of {@link #generateSpendingInsights(UUID, Runnable)} for the
+     * HTTP endpoints. Same lookup order, but the Redis/DB work runs on the
+     * bounded-elastic scheduler and no thread is held while Gemini responds.
+     * Successful results are written back to the "aiInsights" cache. If Gemini
+     * fails or is refused by {@link GeminiCallGuard}, the expired DB row (if any)
+     * is served instead; failing that, a placeholder that still carries the
+     * detector's anomalies.
+     */
+    public CompletableFuture<SpendingInsightResponse> generateSpendingInsightsAsync(UUID userId) {
+        return Mono.fromCallable(() -> {
+                    SpendingInsightResponse cached = insightsCache().get(userId.toString(), SpendingInsightResponse.class);
+                    if (cached != null) {
+                        log.info("[CACHE LAYER] ✅ Redis HIT for user: {}", userId);
+                        return InsightsPlan.of(cached);
+                    }
+                    log.info("[CACHE LAYER] ❌ Redis MISS for user: {}. Checking Database...", userId);
+                    return planInsights(userId);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(plan -> generateIfNeeded(userId, plan)
+                        .doOnNext(response -> insightsCache().put(userId.toString(), response))
+                        .onErrorResume(e -> {
+                            log.warn("Gemini unavailable for user: {} — serving {} ({})",
+                                    userId, fallbackDescription(plan), e.getMessage());
+                            return Mono.just(fallback(plan));
+                        }))
+                .onErrorResume(e -> {
+                    log.error("Error generating AI insights for user: {}", userId, e);
+                    return Mono.just(insightsUnavailable(null));
+                })
+                .toFuture();
+    }
+
+    /**
+     * Streaming variant of {@link #generateSpendingInsightsAsync(UUID)} for
+     * GET /ai/insights/stream. Cached/DB answers are emitted straight away as the
+     * final event. Otherwise the summary text is forwarded as Gemini streams it,
+     * followed by the parsed response, which is persisted to the AiInsight row
+     * and the "aiInsights" cache exactly like the non-streaming path.
+     */
+    public Flux<InsightsStreamEvent> streamSpendingInsights(UUID userId) {
+        return Mono.fromCallable(() -> {
+                    SpendingInsightResponse cached = insightsCache().get(userId.toString(), SpendingInsightResponse.class);
+                    return cached != null ? InsightsPlan.of(cached) : planInsights(userId);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(plan -> {
+                    if (plan.ready() != null) {
+                        return Flux.just(InsightsStreamEvent.complete(plan.ready()));
+                    }
+                    StringBuilder answer = new StringBuilder();
+                    StreamingSummaryExtractor summary = new StreamingSummaryExtractor();
+
+                    Flux<InsightsStreamEvent> partials = geminiClient.streamContent(GeminiFeature.INSIGHTS, plan.prompt())
+                            .doOnNext(answer::append)
+                            .map(summary::append)
+                            .filter(delta -> !delta.isEmpty())
+                            .map(InsightsStreamEvent::summary);
+                    Mono<InsightsStreamEvent> result = Mono.fromCallable(() -> {
+                                PromptResultCache.Answer streamed = PromptResultCache.Answer.fromGemini(answer.toString());
+                                return InsightsStreamEvent.complete(persistGenerated(userId, plan, streamed));
+                            })
+                            .subscribeOn(Schedulers.boundedElastic());
+
+                    // Same prompt answered before: skip the stream and reuse the stored answer
+                    Flux<InsightsStreamEvent> generated = promptResultCache.lookup(GeminiFeature.INSIGHTS, plan.prompt())
+                            .publishOn(Schedulers.boundedElastic())
+                            .map(stored -> InsightsStreamEvent.complete(
+                                    persistGenerated(userId, plan, PromptResultCache.Answer.fromCache(stored))))
+                            .flux()
+                            .switchIfEmpty(partials.concatWith(result));
+
+                    return generated
+                            .onErrorResume(e -> {
+                                log.warn("Gemini stream failed for user: {} — serving {} ({})",
+                                        userId, fallbackDescription(plan), e.getMessage());
+                                return Flux.just(InsightsStreamEvent.complete(fallback(plan)));
+                            });
+                })
+                .onErrorResume(e -> {
+                    log.error("Error streaming AI insights for user: {}", userId, e);
+                    return Flux.just(InsightsStreamEvent.complete(insightsUnavailable(null)));
+                });
+    }
+
+    /**
+     * One event of {@link #streamSpendingInsights(UUID)}: either a fragment of
+     * summary text or the final parsed insights.
+     */
+    public record InsightsStreamEvent(String summaryDelta, SpendingInsightResponse insights) {
+        static InsightsStreamEvent summary(String delta) {
+            return new InsightsStreamEvent(delta, null);
         }
 
-        log.info("[CACHE LAYER] ❌ Database MISS/EXPIRED. Calling Gemini API... \uD83E\uDD16");
-        // Both miss — call Gemini
-        return generateAndPersist(userId, existing);
+        static InsightsStreamEvent complete(SpendingInsightResponse insights) {
+            return new InsightsStreamEvent(null, insights);
+        }
+
+        public boolean isComplete() {
+            return insights != null;
+        }
     }
 
     /**
-     * Force-refresh insights: evict Redis, delete DB row, regenerate via Gemini.
+     * Force-refresh insights: evict Redis, regenerate via Gemini and overwrite the
+     * DB row. The old row is kept until the new one is written so it can still be
+     * served if Gemini is unavailable. Neither the expiry nor the context-hash
+     * check short-circuits a refresh, so a bad stored row can always be replaced;
+     * an unchanged prompt is still answered by {@link PromptResultCache}.
      * Called by POST /ai/insights/refresh
      */
-    @CacheEvict(value = "aiInsights", key = "#userId.toString()")
-    @Transactional
-    public SpendingInsightResponse refreshSpendingInsights(UUID userId) {
+    public CompletableFuture<SpendingInsightResponse> refreshSpendingInsightsAsync(UUID userId) {
         log.info("Force refreshing AI insights for user: {}", userId);
-        aiInsightRepository.deleteByUserId(userId);
-        return generateAndPersist(userId, Optional.empty());
+        return Mono.fromCallable(() -> {
+                    insightsCache().evict(userId.toString());
+                    return planInsights(userId, true);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(plan -> generateIfNeeded(userId, plan)
+                        .doOnNext(response -> insightsCache().put(userId.toString(), response))
+                        .onErrorResume(e -> {
+                            log.warn("Gemini unavailable for user: {} — serving {} ({})",
+                                    userId, fallbackDescription(plan), e.getMessage());
+                            return Mono.just(fallback(plan));
+                        }))
+                .onErrorResume(e -> {
+                    log.error("Error refreshing AI insights for user: {}", userId, e);
+                    return Mono.just(insightsUnavailable(null));
+                })
+                .toFuture();
     }
 
     // ==================== Anomaly Detection & Budget Recommendations
     // ====================
 
-    public List<String> detectAnomalies(UUID userId) {
+    /**
+     * Served from the same cached generation as the insights. Anomalies are
+     * found by {@link SpendingAnomalyDetector}; with ai.anomalies.gemini-phrasing
+     * on, the insights call also rewords them. The detector needs no Gemini, so
+     * its findings are still returned, unphrased, when Gemini is unavailable.
+     */
+    public CompletableFuture<List<String>> detectAnomaliesAsync(UUID userId) {
         log.info("Detecting spending anomalies for user: {}", userId);
-        try {
-            LocalDateTime startDate = LocalDateTime.now().minusDays(30);
-            List<Transaction> transactions = transactionRepository
-                    .findByUserIdAndDateAfterOrderByDateDesc(userId, startDate);
-            if (transactions.size() < 10) {
-                return List.of("Need more transaction data to detect anomalies (at least 10 transactions)");
-            }
-            String ctx = buildCompactContext(transactions, budgetRepository.findByUserId(userId).orElse(null));
-            String prompt = "Financial advisor. Analyze this user data and return JSON array ONLY (no markdown):\n"
-                    + ctx +
-                    "\nReturn a JSON array of 2-4 anomaly description strings: [\"anomaly1\",\"anomaly2\"]";
-            return parseJsonArray(geminiClient.generateContent(prompt));
-        } catch (Exception e) {
-            log.error("Error detecting anomalies for user: {}", userId, e);
-            return List.of("Unable to detect anomalies at this time");
-        }
+        return generateSpendingInsightsAsync(userId)
+                .thenApply(insights -> insights.getAnomalies() != null
+                        ? insights.getAnomalies()
+                        : List.of("Unable to detect anomalies at this time"));
     }
 
-    public List<String> generateBudgetRecommendations(UUID userId) {
+    /** Served from the same cached generation as the insights. */
+    public CompletableFuture<List<String>> generateBudgetRecommendationsAsync(UUID userId) {
         log.info("Generating budget recommendations for user: {}", userId);
-        try {
-            LocalDateTime startDate = LocalDateTime.now().minusDays(90);
-            List<Transaction> transactions = transactionRepository
-                    .findByUserIdAndDateAfterOrderByDateDesc(userId, startDate);
-            Budget budget = budgetRepository.findByUserId(userId).orElse(null);
-            String ctx = buildCompactContext(transactions, budget);
-            String prompt = "Give 3-5 specific budget recommendations. Data:\n" + ctx +
-                    "\nReturn JSON array only (no markdown): [\"tip1\",\"tip2\"]";
-            return parseJsonArray(geminiClient.generateContent(prompt));
-        } catch (Exception e) {
-            log.error("Error generating budget recommendations for user: {}", userId, e);
-            return List.of("Unable to generate recommendations at this time");
+        return generateSpendingInsightsAsync(userId)
+                .thenApply(insights -> insights.getBudgetRecommendations() != null
+                        ? insights.getBudgetRecommendations()
+                        : List.of("Unable to generate recommendations at this time"));
+    }
+
+    // ==================== Private: Plan, Generate & Persist ====================
+
+    /**
+     * Either an answer that needs no Gemini call (valid DB row, no data yet)
+     * or the prompt to send with the hash of its compact context, plus the
+     * expired DB row to fall back on if Gemini cannot be reached.
+     */
+    private record InsightsPlan(SpendingInsightResponse ready, String prompt, String contextHash,
+            List<String> anomalies, SpendingInsightResponse stale) {
+        static InsightsPlan of(SpendingInsightResponse ready) {
+            return new InsightsPlan(ready, null, null, null, null);
+        }
+
+        static InsightsPlan prompt(String prompt, String contextHash, List<String> anomalies,
+                SpendingInsightResponse stale) {
+            return new InsightsPlan(null, prompt, contextHash, anomalies, stale);
         }
     }
 
-    // ==================== Private: Generate & Persist ====================
+    private InsightsPlan planInsights(UUID userId) {
+        return planInsights(userId, false);
+    }
 
-    private SpendingInsightResponse generateAndPersist(UUID userId, Optional<AiInsight> existing) {
-        try {
-            LocalDateTime startDate = LocalDateTime.now().minusDays(90);
-            List<Transaction> transactions = transactionRepository
-                    .findByUserIdAndDateAfterOrderByDateDesc(userId, startDate);
-
-            if (transactions.isEmpty()) {
-                return SpendingInsightResponse.builder()
-                        .summary("No transaction data available yet. Start tracking your expenses!")
-                        .recommendations(List.of("Add your first transaction to get personalized insights"))
-                        .build();
-            }
+    /**
+     * Blocking DB lookups that decide whether Gemini needs to be called.
+     * {@code force} skips both the valid-row and the unchanged-context checks (refresh).
+     *
+     * One transaction query feeds everything: the anomaly detector gets the
+     * whole history window, the compact context the last 90 days of it.
+     */
+    private InsightsPlan planInsights(UUID userId, boolean force) {
+        // DB check: valid (non-expired) row? Rows from before the sections were
+        // consolidated have no budget recommendations and are regenerated.
+        Optional<AiInsight> existing = aiInsightRepository.findByUserId(userId);
+        if (!force && existing.isPresent() && existing.get().getExpiresAt().isAfter(LocalDateTime.now())
+                && existing.get().getBudgetRecommendations() != null) {
+            log.info("[CACHE LAYER] ✅ Database HIT for user: {} (expires: {})", userId, existing.get().getExpiresAt());
+            return InsightsPlan.of(toResponse(existing.get()));
+        }
 
-            Budget budget = budgetRepository.findByUserId(userId).orElse(null);
-            String ctx = buildCompactContext(transactions, budget);
-            String prompt = buildInsightsPrompt(ctx);
-
-            SpendingInsightResponse response = parseInsightsResponse(geminiClient.generateContent(prompt));
-
-            // Persist to DB (upsert: update existing row or create new)
-            // Always re-query DB right before save to handle concurrent requests
-            // (two threads could both see Optional.empty() and both try to INSERT)
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-            AiInsight insight = aiInsightRepository.findByUserId(userId)
-                    .orElseGet(() -> AiInsight.builder().user(user).build());
-            insight.setSummary(response.getSummary());
-            insight.setRecommendations(toJson(response.getRecommendations()));
-            insight.setPatterns(toJson(response.getPatterns()));
-            insight.setTopCategories(toJson(response.getTopCategories()));
-            insight.setExpiresAt(LocalDateTime.now().plusHours(INSIGHTS_TTL_HOURS));
-
-            try {
-                aiInsightRepository.saveAndFlush(insight);
-            } catch (DataIntegrityViolationException race) {
-                // Narrow race window: another thread inserted between our re-query and save.
-                // Re-fetch the row that was just inserted and update it.
-                log.warn("[IDEMPOTENCY] Concurrent INSERT race for user: {} — re-fetching to update.", userId);
-                AiInsight conflicted = aiInsightRepository.findByUserId(userId)
-                        .orElseThrow(() -> new RuntimeException("Cannot resolve insight race condition", race));
-                conflicted.setSummary(response.getSummary());
-                conflicted.setRecommendations(toJson(response.getRecommendations()));
-                conflicted.setPatterns(toJson(response.getPatterns()));
-                conflicted.setTopCategories(toJson(response.getTopCategories()));
-                conflicted.setExpiresAt(LocalDateTime.now().plusHours(INSIGHTS_TTL_HOURS));
-                aiInsightRepository.save(conflicted);
-            }
+        LocalDateTime now = LocalDateTime.now();
+        List<Transaction> history = transactionRepository
+                .findByUserIdAndDateAfterOrderByDateDesc(userId, now.minusDays(SpendingAnomalyDetector.HISTORY_DAYS));
+        LocalDateTime contextStart = now.minusDays(90);
+        List<Transaction> transactions = history.stream()
+                .filter(t -> t.getDate().isAfter(contextStart))
+                .toList();
+
+        if (transactions.isEmpty()) {
+            return InsightsPlan.of(SpendingInsightResponse.builder()
+                    .summary("No transaction data available yet. Start tracking your expenses!")
+                    .recommendations(List.of("Add your first transaction to get personalized insights"))
+                    .budgetRecommendations(List.of("Add your first transaction to get budget recommendations"))
+                    .anomalies(List.of(NOT_ENOUGH_DATA_FOR_ANOMALIES))
+                    .build());
+        }
 
-            log.info("AI insights persisted to DB for user: {} (expires in {}h)", userId, INSIGHTS_TTL_HOURS);
-            return response;
+        List<String> anomalies = describeAnomalies(history, now);
+        Budget budget = budgetRepository.findByUserId(userId).orElse(null);
+        String ctx = buildCompactContext(transactions, budget);
+        // Anomalies are part of the stored row, so they are part of what "unchanged" means
+        String contextHash = PromptResultCache.sha256(ctx, toJson(anomalies));
+
+        if (!force && existing.isPresent() && contextHash.equals(existing.get().getContextHash())) {
+            // Aggregates haven't moved since these insights were generated — keep them
+            log.info("[CACHE LAYER] ✅ Context unchanged for user: {}. Extending stored insights", userId);
+            transactionTemplate.executeWithoutResult(status -> aiInsightRepository.findByUserId(userId)
+                    .ifPresent(row -> row.setExpiresAt(LocalDateTime.now().plusHours(INSIGHTS_TTL_HOURS))));
+            return InsightsPlan.of(toResponse(existing.get()));
+        }
 
-        } catch (Exception e) {
-            log.error("Error generating AI insights for user: {}", userId, e);
-            return SpendingInsightResponse.builder()
-                    .summary("Unable to generate insights at this time. Please try again later.")
-                    .build();
+        log.info("[CACHE LAYER] ❌ Database MISS/EXPIRED. Calling Gemini API... \uD83E\uDD16");
+        return InsightsPlan.prompt(buildInsightsPrompt(ctx, anomalies), contextHash, anomalies,
+                existing.map(this::toResponse).orElse(null));
+    }
+
+    private List<String> describeAnomalies(List<Transaction> history, LocalDateTime now) {
+        if (history.size() < 10) {
+            return List.of(NOT_ENOUGH_DATA_FOR_ANOMALIES);
+        }
+        List<String> findings = anomalyDetector.detect(history, now).stream()
+                .map(SpendingAnomalyDetector.Anomaly::message)
+                .toList();
+        return findings.isEmpty() ? List.of("No unusual spending detected in the last 30 days") : findings;
+    }
+
+    /**
+     * Calls Gemini without blocking, then hops back to bounded-elastic for the
+     * JDBC write so the WebClient event loop is never blocked.
+     */
+    private Mono<SpendingInsightResponse> generateIfNeeded(UUID userId, InsightsPlan plan) {
+        if (plan.ready() != null) {
+            return Mono.just(plan.ready());
         }
+        return promptResultCache.generate(GeminiFeature.INSIGHTS, plan.prompt())
+                .publishOn(Schedulers.boundedElastic())
+                .map(answer -> persistGenerated(userId, plan, answer));
+    }
+
+    /** Parses a Gemini answer, persists it and puts it in the "aiInsights" cache. Blocking. */
+    private SpendingInsightResponse persistGenerated(UUID userId, InsightsPlan plan, PromptResultCache.Answer answer) {
+        SpendingInsightResponse response = parseAnswer(plan, answer);
+        transactionTemplate.executeWithoutResult(status -> persistInsights(userId, response, plan.contextHash()));
+        insightsCache().put(userId.toString(), response);
+        return response;
+    }
+
+    private void persistInsights(UUID userId, SpendingInsightResponse response, String contextHash) {
+        // Persist to DB (upsert: update existing row or create new)
+        // Always re-query DB right before save to handle concurrent requests
+        // (two threads could both see Optional.empty() and both try to INSERT)
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        AiInsight insight = aiInsightRepository.findByUserId(userId)
+                .orElseGet(() -> AiInsight.builder().user(user).build());
+        applyInsights(insight, response, contextHash);
+
+        try {
+            aiInsightRepository.saveAndFlush(insight);
+        } catch (DataIntegrityViolationException race) {
+            // Narrow race window: another thread inserted between our re-query and save.
+            // Re-fetch the row that was just inserted and update it.
+            log.warn("[IDEMPOTENCY] Concurrent INSERT race for user: {} — re-fetching to update.", userId);
+            AiInsight conflicted = aiInsightRepository.findByUserId(userId)
+                    .orElseThrow(() -> new RuntimeException("Cannot resolve insight race condition", race));
+            applyInsights(conflicted, response, contextHash);
+            aiInsightRepository.save(conflicted);
+        }
+
+        log.info("AI insights persisted to DB for user: {} (expires in {}h)", userId, INSIGHTS_TTL_HOURS);
+    }
+
+    private void applyInsights(AiInsight insight, SpendingInsightResponse response, String contextHash) {
+        insight.setSummary(response.getSummary());
+        insight.setRecommendations(toJson(response.getRecommendations()));
+        insight.setPatterns(toJson(response.getPatterns()));
+        insight.setTopCategories(toJson(response.getTopCategories()));
+        insight.setAnomalies(toJson(response.getAnomalies()));
+        insight.setBudgetRecommendations(toJson(response.getBudgetRecommendations()));
+        insight.setContextHash(contextHash);
+        insight.setExpiresAt(LocalDateTime.now().plusHours(INSIGHTS_TTL_HOURS));
+    }
+
+    /**
+     * What to serve when Gemini fails: the expired DB row if there is one,
+     * otherwise a placeholder with the detector's findings, which need no Gemini.
+     */
+    private SpendingInsightResponse fallback(InsightsPlan plan) {
+        return plan.stale() != null ? plan.stale() : insightsUnavailable(plan.anomalies());
+    }
+
+    private static String fallbackDescription(InsightsPlan plan) {
+        return plan.stale() != null ? "previous insights" : "detected anomalies only";
+    }
+
+    /** @param anomalies the detector's findings, or null if planning itself failed */
+    private SpendingInsightResponse insightsUnavailable(List<String> anomalies) {
+        return SpendingInsightResponse.builder()
+                .summary("Unable to generate insights at this time. Please try again later.")
+                .anomalies(anomalies)
+                .build();
+    }
+
+    private Cache insightsCache() {
+        return Objects.requireNonNull(cacheManager.getCache("aiInsights"), "aiInsights cache is not configured");
     }
 
     // ==================== Mapping ====================
@@ -199,6 +449,8 @@ public class AiInsightsService {
                 .recommendations(fromJson(insight.getRecommendations()))
                 .patterns(fromJson(insight.getPatterns()))
                 .topCategories(fromJson(insight.getTopCategories()))
+                .anomalies(fromJson(insight.getAnomalies()))
+                .budgetRecommendations(fromJson(insight.getBudgetRecommendations()))
                 .build();
     }
 
@@ -224,10 +476,12 @@ public class AiInsightsService {
     // ==================== Helpers ====================
 
     private String buildCompactContext(List<Transaction> transactions, Budget budget) {
+        // TreeMap: stable key order so identical aggregates always produce identical context (and hash)
         Map<String, BigDecimal> expenseByCategory = transactions.stream()
                 .filter(t -> t.getType() == TransactionType.EXPENSE)
                 .collect(Collectors.groupingBy(
                         t -> t.getCategory() != null ? t.getCategory() : "Other",
+                        TreeMap::new,
                         Collectors.reducing(BigDecimal.ZERO, Transaction::getAmount, BigDecimal::add)));
 
         BigDecimal totalExpense = calculateTotalByType(transactions, TransactionType.EXPENSE);
@@ -261,38 +515,73 @@ public class AiInsightsService {
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
-    private String buildInsightsPrompt(String ctx) {
+    /**
+     * One structured call for every section. When anomaly phrasing is on, the
+     * detector's findings are sent along to be reworded in the same call.
+     */
+    private String buildInsightsPrompt(String ctx, List<String> anomalies) {
+        boolean phraseAnomalies = anomalyGeminiPhrasing && !anomalies.isEmpty();
         return "Financial advisor. Analyze this user data and return JSON ONLY (no markdown):\n" + ctx +
+                (phraseAnomalies ? "\nDetected anomalies:\n" + toJson(anomalies) : "") +
                 "\nReturn: {\"summary\":\"2 sentences\",\"recommendations\":[\"3-5 specific tips\"]," +
-                "\"patterns\":[\"2-3 key patterns\"],\"topCategories\":[\"Cat: $amt\"]}";
+                "\"patterns\":[\"2-3 key patterns\"],\"topCategories\":[\"Cat: $amt\"]," +
+                "\"budgetRecommendations\":[\"3-5 specific budget recommendations\"]" +
+                (phraseAnomalies
+                        ? ",\"anomalies\":[\"each detected anomaly rewritten as one short friendly sentence, same order, keep every number\"]}"
+                        : "}");
+    }
+
+    /**
+     * Parses an insights answer. A fresh answer is stored in PromptResultCache
+     * only once it has parsed. An answer that does not parse is evicted so the
+     * next identical prompt goes back to Gemini, and fails the generation: it is
+     * never persisted or cached, and the caller serves its fallback instead.
+     * Blocking.
+     */
+    private SpendingInsightResponse parseAnswer(InsightsPlan plan, PromptResultCache.Answer answer) {
+        Optional<SpendingInsightResponse> parsed = parseInsightsResponse(answer.text(), plan.anomalies());
+        if (parsed.isEmpty()) {
+            promptResultCache.evict(GeminiFeature.INSIGHTS, plan.prompt());
+            throw new UnparseableAnswerException();
+        }
+        if (!answer.cached()) {
+            promptResultCache.store(GeminiFeature.INSIGHTS, plan.prompt(), answer.text());
+        }
+        return parsed.get();
     }
 
-    private SpendingInsightResponse parseInsightsResponse(String aiResponse) {
+    /**
+     * @param anomalies the detector's findings; kept unless Gemini returned a
+     *                  rewording with the same number of entries
+     * @return empty if the answer is not a JSON object with at least a summary
+     */
+    private Optional<SpendingInsightResponse> parseInsightsResponse(String aiResponse, List<String> anomalies) {
         try {
             String jsonContent = extractJsonObject(aiResponse);
             Map<String, Object> responseMap = objectMapper.readValue(jsonContent, Map.class);
-            return SpendingInsightResponse.builder()
-                    .summary((String) responseMap.get("summary"))
+            if (!(responseMap.get("summary") instanceof String summary)) {
+                log.error("AI insights response has no summary");
+                return Optional.empty();
+            }
+            List<String> phrased = (List<String>) responseMap.get("anomalies");
+            return Optional.of(SpendingInsightResponse.builder()
+                    .summary(summary)
                     .recommendations((List<String>) responseMap.getOrDefault("recommendations", List.of()))
                     .patterns((List<String>) responseMap.getOrDefault("patterns", List.of()))
                     .topCategories((List<String>) responseMap.getOrDefault("topCategories", List.of()))
-                    .build();
-        } catch (JsonProcessingException e) {
+                    .budgetRecommendations((List<String>) responseMap.getOrDefault("budgetRecommendations", List.of()))
+                    .anomalies(phrased != null && phrased.size() == anomalies.size() ? phrased : anomalies)
+                    .build());
+        } catch (JsonProcessingException | ClassCastException e) {
             log.error("Error parsing AI insights response: {}", e.getMessage());
-            return SpendingInsightResponse.builder()
-                    .summary(aiResponse.length() > 500 ? aiResponse.substring(0, 500) + "..." : aiResponse)
-                    .recommendations(List.of("Unable to parse detailed insights"))
-                    .build();
+            return Optional.empty();
         }
     }
 
-    private List<String> parseJsonArray(String aiResponse) {
-        try {
-            return objectMapper.readValue(extractJsonArray(aiResponse), new TypeReference<>() {
-            });
-        } catch (JsonProcessingException e) {
-            log.error("Error parsing JSON array from AI response: {}", e.getMessage());
-            return List.of(aiResponse.length() > 200 ? aiResponse.substring(0, 200) : aiResponse);
+    /** Gemini answered, but not with the expected sections. */
+    private static class UnparseableAnswerException extends RuntimeException {
+        UnparseableAnswerException() {
+            super("Gemini insights answer could not be parsed");
         }
     }
 
@@ -301,10 +590,4 @@ public class AiInsightsService {
         java.util.regex.Matcher m = p.matcher(text);
         return m.find() ? m.group() : text.replaceAll("(?s)```json\\s*", "").replaceAll("```", "").trim();
     }
-
-    private String extractJsonArray(String text) {
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile("\\[[\\s\\S]*\\]", java.util.regex.Pattern.DOTALL);
-        java.util.regex.Matcher m = p.matcher(text);
-        return m.find() ? m.group() : text.replaceAll("(?s)```json\\s*", "").replaceAll("```", "").trim();
-    }
 }
\ No newline at end of file
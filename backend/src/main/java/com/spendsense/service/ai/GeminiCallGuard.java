@@ -0,0 +1,164 @@
+package com.spendsense.service.ai;
+
+import com.spendsense.config.GeminiConfig;
+import com.spendsense.exception.GeminiUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.handler.timeout.WriteTimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control for every Gemini request attempt: circuit breaker first,
+ * then the adaptive concurrency limit (whose ceiling is the per-node bulkhead).
+ *
+ * A refused call fails immediately with {@link GeminiUnavailableException}
+ * instead of queueing, so when Gemini is slow or rate-limiting us the AI
+ * endpoints fall back to cached/degraded answers rather than piling up work.
+ *
+ * Outcome classification:
+ * - 429 / 503 / other 5xx / timeouts / connection errors: breaker failure, limiter drop
+ * - other 4xx: Gemini is healthy, the request was bad — breaker success, limiter ignores it
+ * - cancellation or anything else: ignored by both
+ *
+ * Metrics: gemini.concurrency.limit, gemini.concurrency.in_flight,
+ * gemini.circuit.state (0 closed, 1 half-open, 2 open), gemini.calls.rejected{reason}.
+ */
+@Component
+@Slf4j
+public class GeminiCallGuard {
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final GeminiCircuitBreaker breaker;
+    private final Counter rejectedOpen;
+    private final Counter rejectedBusy;
+
+    public GeminiCallGuard(GeminiConfig geminiConfig, MeterRegistry meterRegistry) {
+        GeminiConfig.Resilience config = geminiConfig.getResilience();
+        this.limiter = new AdaptiveConcurrencyLimiter(
+                config.getInitialConcurrency(), config.getMaxConcurrency());
+        this.breaker = new GeminiCircuitBreaker(
+                config.getSlidingWindowSize(), config.getMinimumCalls(), config.getFailureRateThreshold(),
+                Duration.ofSeconds(config.getOpenSeconds()), config.getHalfOpenCalls());
+
+        Gauge.builder("gemini.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                .description("Current adaptive concurrency limit for Gemini calls")
+                .register(meterRegistry);
+        Gauge.builder("gemini.concurrency.in_flight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                .description("Gemini calls currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("gemini.circuit.state", breaker, b -> b.state().ordinal())
+                .description("Gemini circuit breaker state (0 closed, 1 half-open, 2 open)")
+                .register(meterRegistry);
+        this.rejectedOpen = Counter.builder("gemini.calls.rejected")
+                .tag("reason", "circuit_open")
+                .register(meterRegistry);
+        this.rejectedBusy = Counter.builder("gemini.calls.rejected")
+                .tag("reason", "concurrency_limit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Wraps one Gemini request attempt. Admission is checked on every
+     * subscription, so retries are re-admitted (and stop once the circuit opens).
+     */
+    public <T> Mono<T> protect(Mono<T> call) {
+        return Mono.defer(() -> {
+            Permit permit = admit();
+            return call
+                    .doOnSuccess(result -> permit.succeeded())
+                    .doOnError(permit::failed)
+                    .doOnCancel(permit::cancelled);
+        });
+    }
+
+    /**
+     * Streaming variant of {@link #protect(Mono)}. The permit is held until the
+     * stream ends.
+     */
+    public <T> Flux<T> protectStream(Flux<T> call) {
+        return Flux.defer(() -> {
+            Permit permit = admit();
+            return call
+                    .doOnComplete(permit::succeeded)
+                    .doOnError(permit::failed)
+                    .doOnCancel(permit::cancelled);
+        });
+    }
+
+    /**
+     * @throws GeminiUnavailableException if the circuit is open or the limit is reached
+     */
+    private Permit admit() {
+        if (!breaker.tryAcquire()) {
+            rejectedOpen.increment();
+            throw new GeminiUnavailableException(
+                    "AI service is temporarily unavailable. Please try again shortly.");
+        }
+        if (!limiter.tryAcquire()) {
+            breaker.onIgnored();
+            rejectedBusy.increment();
+            log.debug("Gemini concurrency limit {} reached — rejecting call", limiter.limit());
+            throw new GeminiUnavailableException("AI service is busy. Please try again shortly.");
+        }
+        return new Permit();
+    }
+
+    /** One admitted call; releases limiter and breaker exactly once. */
+    private final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void succeeded() {
+            if (released.compareAndSet(false, true)) {
+                limiter.onSuccess();
+                breaker.onSuccess();
+            }
+        }
+
+        void failed(Throwable e) {
+            if (released.compareAndSet(false, true)) {
+                onError(e);
+            }
+        }
+
+        void cancelled() {
+            if (released.compareAndSet(false, true)) {
+                limiter.onIgnored();
+                breaker.onIgnored();
+            }
+        }
+    }
+
+    private void onError(Throwable e) {
+        if (isUpstreamFailure(e)) {
+            limiter.onDropped();
+            breaker.onFailure();
+        } else if (e instanceof WebClientResponseException) {
+            limiter.onIgnored();
+            breaker.onSuccess();
+        } else {
+            limiter.onIgnored();
+            breaker.onIgnored();
+        }
+    }
+
+    private boolean isUpstreamFailure(Throwable e) {
+        if (e instanceof WebClientResponseException wcre) {
+            return wcre.getStatusCode().value() == 429 || wcre.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException
+                || e instanceof TimeoutException
+                || e instanceof ReadTimeoutException
+                || e instanceof WriteTimeoutException;
+    }
+}
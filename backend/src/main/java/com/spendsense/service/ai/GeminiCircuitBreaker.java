@@ -0,0 +1,139 @@
+package com.spendsense.service.ai;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Count-based circuit breaker for Gemini calls.
+ *
+ * CLOSED: outcomes of the last {@code slidingWindowSize} calls are tracked; once
+ * at least {@code minimumCalls} are recorded and the failure percentage reaches
+ * {@code failureRateThreshold} the circuit opens.
+ * OPEN: every call is refused for {@code openDuration}.
+ * HALF_OPEN: {@code halfOpenCalls} trial calls are let through; all succeeding
+ * closes the circuit, any failure re-opens it.
+ */
+@Slf4j
+final class GeminiCircuitBreaker {
+
+    enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failures;
+    private Instant openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    GeminiCircuitBreaker(int slidingWindowSize, int minimumCalls, int failureRateThreshold,
+            Duration openDuration, int halfOpenCalls) {
+        this.window = new boolean[Math.max(1, slidingWindowSize)];
+        this.minimumCalls = Math.clamp(minimumCalls, 1, window.length);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (Instant.now().isBefore(openedAt.plus(openDuration))) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        switch (state) {
+            case HALF_OPEN -> {
+                if (++halfOpenSuccesses >= halfOpenCalls) {
+                    resetWindow();
+                    transitionTo(State.CLOSED);
+                }
+            }
+            case CLOSED -> record(false);
+            case OPEN -> {
+                // Straggler admitted before the circuit opened; nothing to learn
+            }
+        }
+    }
+
+    synchronized void onFailure() {
+        switch (state) {
+            case HALF_OPEN -> open();
+            case CLOSED -> {
+                record(true);
+                if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+                    open();
+                }
+            }
+            case OPEN -> {
+            }
+        }
+    }
+
+    /** The admitted call never reached Gemini (e.g. rejected by the limiter); give the trial permit back. */
+    synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        openedAt = Instant.now();
+        resetWindow();
+        transitionTo(State.OPEN);
+    }
+
+    private void resetWindow() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+
+    private void transitionTo(State newState) {
+        if (state != newState) {
+            log.warn("Gemini circuit breaker {} -> {}", state, newState);
+            state = newState;
+        }
+    }
+}
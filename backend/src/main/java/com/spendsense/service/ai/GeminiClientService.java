@@ -2,21 +2,33 @@ package com.spendsense.service.ai;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.spendsense.config.GeminiConfig;
+import com.spendsense.exception.GeminiUnavailableException;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
-import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * Low-level client for Google Gemini API
- * Handles direct API communication with retry logic
+ * Handles direct API communication with retry logic.
+ *
+ * Every call is tagged with a {@link GeminiFeature}, which drives model routing,
+ * hedging and the per-feature metrics recorded by {@link GeminiMetrics}. All
+ * methods are non-blocking.
  */
 @Service
 @Slf4j
@@ -25,21 +37,110 @@ public class GeminiClientService {
 
     private final WebClient geminiWebClient;
     private final GeminiConfig geminiConfig;
+    private final GeminiCallGuard callGuard;
+    private final GeminiModelRouter modelRouter;
+    private final GeminiMetrics metrics;
 
     /**
-     * Generate text content from a text prompt
+     * Generate text content. The model is chosen by {@link GeminiModelRouter}
+     * from the feature and prompt size, and hedgeable features get a duplicate
+     * request once the primary outlives the model's observed p95.
      */
-    public String generateContent(String prompt) {
-        return generateContent(prompt, geminiConfig.getModel());
+    public Mono<String> generateContentAsync(GeminiFeature feature, String prompt) {
+        String model = modelRouter.route(feature, prompt.length());
+        log.debug("Generating {} content with Gemini model: {}", feature.key(), model);
+        Supplier<Mono<String>> call = () -> timed(model, callGeminiApi(feature, textRequest(prompt), model));
+        return modelRouter.hedgeDelay(feature, model)
+                .map(delay -> hedged(feature, model, call, delay))
+                .orElseGet(call);
     }
 
     /**
-     * Generate text content with specific model
+     * Races the primary call against a duplicate started after {@code delay}
+     * (if the hedge budget allows) and returns whichever answers first. The
+     * primary is cached, so it runs to completion (and is still timed) even when
+     * the hedge wins. A hedge that loses is cancelled in flight by
+     * {@link Mono#firstWithValue}.
      */
-    public String generateContent(String prompt, String model) {
-        log.debug("Generating content with Gemini model: {}", model);
+    private Mono<String> hedged(GeminiFeature feature, String model, Supplier<Mono<String>> call, Duration delay) {
+        return Mono.defer(() -> {
+            Mono<String> primary = call.get().cache();
+            Mono<Boolean> primaryFailed = primary.then(Mono.<Boolean>empty()).onErrorReturn(true);
+            // A fast primary failure cancels the pending hedge; a hedge already sent keeps going
+            Mono<String> hedge = Mono.delay(delay)
+                    .takeUntilOther(primaryFailed)
+                    .filter(tick -> modelRouter.tryAcquireHedge())
+                    .doOnNext(tick -> {
+                        log.debug("Gemini call exceeded {}ms — sending hedged request", delay.toMillis());
+                        metrics.recordHedge(feature, model);
+                    })
+                    .flatMap(tick -> call.get());
+            return Mono.firstWithValue(primary, hedge)
+                    // Neither produced a value: surface the primary's own error
+                    .onErrorResume(e -> primary);
+        });
+    }
 
-        GeminiRequest request = GeminiRequest.builder()
+    private Mono<String> timed(String model, Mono<String> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.doOnSuccess(text -> modelRouter.recordLatency(model, System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Streams the answer via streamGenerateContent (alt=sse), emitting each text
+     * fragment as Gemini produces it. Only 429/503 are retried — those arrive as
+     * the HTTP status, before any fragment has been emitted. Routed like
+     * {@link #generateContentAsync(GeminiFeature, String)} but never hedged.
+     */
+    public Flux<String> streamContent(GeminiFeature feature, String prompt) {
+        String model = modelRouter.route(feature, prompt.length());
+        log.debug("Streaming content with Gemini model: {}", model);
+        String endpoint = String.format("/models/%s:streamGenerateContent?alt=sse&key=%s",
+                model, geminiConfig.getKey());
+
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicInteger attempts = new AtomicInteger();
+            // The final chunk carries the usage totals for the whole answer
+            AtomicReference<UsageMetadata> usage = new AtomicReference<>();
+            return callGuard.protectStream(Flux.defer(() -> {
+                        attempts.incrementAndGet();
+                        return geminiWebClient.post()
+                                .uri(endpoint)
+                                .accept(MediaType.TEXT_EVENT_STREAM)
+                                .bodyValue(textRequest(prompt))
+                                .retrieve()
+                                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<GeminiResponse>>() {
+                                });
+                    }))
+                    .retryWhen(Retry.backoff(geminiConfig.getMaxRetries(), Duration.ofSeconds(2))
+                            .filter(throwable -> throwable instanceof WebClientResponseException.TooManyRequests ||
+                                    throwable instanceof WebClientResponseException.ServiceUnavailable)
+                            .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) -> {
+                                log.error("Max retries exceeded for Gemini streaming API");
+                                return new RuntimeException("Failed to get response from Gemini API after retries");
+                            }))
+                    .mapNotNull(ServerSentEvent::data)
+                    .doOnNext(chunk -> {
+                        if (chunk.getUsageMetadata() != null) {
+                            usage.set(chunk.getUsageMetadata());
+                        }
+                    })
+                    .doOnComplete(() -> metrics.recordSuccess(feature, model, System.nanoTime() - start,
+                            retries(attempts), usage.get()))
+                    .doOnError(e -> metrics.recordFailure(feature, model, System.nanoTime() - start,
+                            retries(attempts), e))
+                    .map(this::extractChunkText)
+                    .filter(text -> !text.isEmpty())
+                    .onErrorMap(e -> !(e instanceof GeminiApiException || e instanceof GeminiUnavailableException),
+                            this::toGeminiApiException);
+        });
+    }
+
+    private GeminiRequest textRequest(String prompt) {
+        return GeminiRequest.builder()
                 .contents(List.of(
                         Content.builder()
                                 .parts(List.of(Part.text(prompt)))
@@ -51,24 +152,21 @@ public class GeminiClientService {
                         .maxOutputTokens(4096)
                         .build())
                 .build();
-
-        return callGeminiApi(request, model);
     }
 
     /**
-     * Generate content from image and text (Vision API)
+     * Generate content from image and text (Vision API); the vision model is
+     * routed by image size. Receipt scans are never hedged.
      */
-    public String generateContentWithImage(String prompt, byte[] imageData, String mimeType) {
+    public Mono<String> generateContentWithImageAsync(String prompt, byte[] imageData, String mimeType) {
         log.debug("Generating content with image using Gemini Vision model");
 
-        String base64Image = Base64.getEncoder().encodeToString(imageData);
-
         GeminiRequest request = GeminiRequest.builder()
                 .contents(List.of(
                         Content.builder()
                                 .parts(List.of(
                                         Part.text(prompt),
-                                        Part.inlineData(base64Image, mimeType)))
+                                        Part.inlineData(imageData, mimeType)))
                                 .build()))
                 .generationConfig(GenerationConfig.builder()
                         .temperature(0.4)
@@ -78,22 +176,32 @@ public class GeminiClientService {
                         .build())
                 .build();
 
-        return callGeminiApi(request, geminiConfig.getVisionModel());
+        return callGeminiApi(GeminiFeature.RECEIPT_SCAN, request,
+                modelRouter.route(GeminiFeature.RECEIPT_SCAN, imageData.length));
     }
 
     /**
-     * Make API call to Gemini with retry logic
+     * Make API call to Gemini with retry logic.
+     * Fully reactive — callers either subscribe or block() at the edge.
+     * Retries only 429/503 and stop as soon as {@link GeminiCallGuard} refuses an
+     * attempt; a refusal surfaces as {@link GeminiUnavailableException}.
      */
-    private String callGeminiApi(GeminiRequest request, String model) {
-        try {
-            String endpoint = String.format("/models/%s:generateContent?key=%s",
-                    model, geminiConfig.getKey());
-
-            GeminiResponse response = geminiWebClient.post()
-                    .uri(endpoint)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(GeminiResponse.class)
+    private Mono<String> callGeminiApi(GeminiFeature feature, GeminiRequest request, String model) {
+        String endpoint = String.format("/models/%s:generateContent?key=%s",
+                model, geminiConfig.getKey());
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            AtomicInteger attempts = new AtomicInteger();
+            // Each attempt (including retries) is admitted separately by the call guard
+            return callGuard.protect(Mono.defer(() -> {
+                        attempts.incrementAndGet();
+                        return geminiWebClient.post()
+                                .uri(endpoint)
+                                .bodyValue(request)
+                                .retrieve()
+                                .bodyToMono(GeminiResponse.class);
+                    }))
                     .retryWhen(Retry.backoff(geminiConfig.getMaxRetries(), Duration.ofSeconds(2))
                             .filter(throwable -> throwable instanceof WebClientResponseException.TooManyRequests ||
                                     throwable instanceof WebClientResponseException.ServiceUnavailable)
@@ -101,28 +209,68 @@ public class GeminiClientService {
                                 log.error("Max retries exceeded for Gemini API");
                                 return new RuntimeException("Failed to get response from Gemini API after retries");
                             }))
-                    .block();
+                    .switchIfEmpty(Mono.error(() -> new RuntimeException("Empty response from Gemini API")))
+                    .map(response -> {
+                        String text = extractText(response);
+                        metrics.recordSuccess(feature, model, System.nanoTime() - start,
+                                retries(attempts), response.getUsageMetadata());
+                        return text;
+                    })
+                    .doOnError(e -> metrics.recordFailure(feature, model, System.nanoTime() - start,
+                            retries(attempts), e))
+                    .doOnNext(text -> log.debug("Successfully generated content from Gemini"))
+                    .onErrorMap(e -> !(e instanceof GeminiApiException || e instanceof GeminiUnavailableException),
+                            this::toGeminiApiException);
+        });
+    }
+
+    private static int retries(AtomicInteger attempts) {
+        return Math.max(0, attempts.get() - 1);
+    }
 
-            if (response == null || response.getCandidates() == null || response.getCandidates().isEmpty()) {
-                log.error("Empty response from Gemini API");
-                throw new RuntimeException("Empty response from Gemini API");
+    private String extractText(GeminiResponse response) {
+        if (response.getCandidates() == null || response.getCandidates().isEmpty()) {
+            log.error("Empty response from Gemini API");
+            throw new GeminiApiException("Empty response from Gemini API", null);
+        }
+        return response.getCandidates().getFirst()
+                .getContent()
+                .getParts()
+                .getFirst()
+                .getText();
+    }
+
+    /** A streamed chunk may carry no text (e.g. the final one with only finishReason). */
+    private String extractChunkText(GeminiResponse chunk) {
+        if (chunk.getCandidates() == null || chunk.getCandidates().isEmpty()) {
+            return "";
+        }
+        Content content = chunk.getCandidates().getFirst().getContent();
+        if (content == null || content.getParts() == null) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        for (Part part : content.getParts()) {
+            if (part.getText() != null) {
+                text.append(part.getText());
             }
+        }
+        return text.toString();
+    }
 
-            String generatedText = response.getCandidates().getFirst()
-                    .getContent()
-                    .getParts()
-                    .getFirst()
-                    .getText();
-
-            log.debug("Successfully generated content from Gemini");
-            return generatedText;
-
-        } catch (WebClientResponseException e) {
-            log.error("Gemini API error - Status: {}, Body: {}", e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Gemini API error: " + e.getMessage(), e);
-        } catch (Exception e) {
-            log.error("Error calling Gemini API", e);
-            throw new RuntimeException("Error calling Gemini API: " + e.getMessage(), e);
+    private GeminiApiException toGeminiApiException(Throwable e) {
+        if (e instanceof WebClientResponseException wcre) {
+            log.error("Gemini API error - Status: {}, Body: {}", wcre.getStatusCode(), wcre.getResponseBodyAsString());
+            return new GeminiApiException("Gemini API error: " + e.getMessage(), e);
+        }
+        log.error("Error calling Gemini API", e);
+        return new GeminiApiException("Error calling Gemini API: " + e.getMessage(), e);
+    }
+
+    /** Any failure talking to Gemini, after retries. */
+    public static class GeminiApiException extends RuntimeException {
+        public GeminiApiException(String message, Throwable cause) {
+            super(message, cause);
         }
     }
 
@@ -152,20 +300,24 @@ public class GeminiClientService {
             return part;
         }
 
-        public static Part inlineData(String base64Data, String mimeType) {
+        public static Part inlineData(byte[] data, String mimeType) {
             Part part = new Part();
-            part.inlineData = new InlineData(mimeType, base64Data);
+            part.inlineData = new InlineData(mimeType, data);
             return part;
         }
     }
 
+    /**
+     * data is raw bytes: Jackson writes byte[] as base64 straight into the
+     * request body, so no base64 String copy of the image is ever built.
+     */
     @Data
     @lombok.AllArgsConstructor
     @lombok.NoArgsConstructor
     public static class InlineData {
         @JsonProperty("mime_type")
         private String mimeType;
-        private String data;
+        private byte[] data;
     }
 
     @Data
@@ -180,6 +332,15 @@ public class GeminiClientService {
     @Data
     public static class GeminiResponse {
         private List<Candidate> candidates;
+        private UsageMetadata usageMetadata;
+    }
+
+    @Data
+    public static class UsageMetadata {
+        private Integer promptTokenCount;
+        private Integer candidatesTokenCount;
+        private Integer thoughtsTokenCount;
+        private Integer totalTokenCount;
     }
 
     @Data
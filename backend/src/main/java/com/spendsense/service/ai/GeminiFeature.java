@@ -0,0 +1,36 @@
+package com.spendsense.service.ai;
+
+/**
+ * What a Gemini call is for. Drives model routing and whether the call may be
+ * hedged (only idempotent reads).
+ */
+public enum GeminiFeature {
+
+    /** Insights / anomalies / budget recommendations — an idempotent read */
+    INSIGHTS("insights", true, false),
+    /** Receipt image extraction */
+    RECEIPT_SCAN("receipt_scan", false, true);
+
+    private final String key;
+    private final boolean hedgeable;
+    private final boolean vision;
+
+    GeminiFeature(String key, boolean hedgeable, boolean vision) {
+        this.key = key;
+        this.hedgeable = hedgeable;
+        this.vision = vision;
+    }
+
+    /** Stable lower-case name used in metrics tags and stored rows */
+    public String key() {
+        return key;
+    }
+
+    public boolean hedgeable() {
+        return hedgeable;
+    }
+
+    public boolean vision() {
+        return vision;
+    }
+}
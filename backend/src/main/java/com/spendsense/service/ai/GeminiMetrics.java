@@ -0,0 +1,116 @@
+package com.spendsense.service.ai;
+
+import com.spendsense.config.GeminiConfig;
+import com.spendsense.exception.GeminiUnavailableException;
+import com.spendsense.service.ai.GeminiClientService.UsageMetadata;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call Gemini instrumentation, tagged by feature and model and exposed via
+ * /actuator/metrics:
+ * - gemini.request.duration (timer, + outcome: success / rejected / error),
+ * including retries
+ * - gemini.request.retries (counter)
+ * - gemini.request.hedged (counter)
+ * - gemini.tokens (distribution, + type: prompt / output / thoughts) from the
+ * response's usageMetadata
+ * - gemini.cost (counter, USD) estimated from gemini.api.pricing
+ * - gemini.prompt_cache.lookups (counter, feature + result: redis / database / miss)
+ */
+@Component
+@RequiredArgsConstructor
+public class GeminiMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final GeminiConfig geminiConfig;
+
+    void recordSuccess(GeminiFeature feature, String model, long nanos, int retries, UsageMetadata usage) {
+        record(feature, model, "success", nanos, retries);
+        if (usage == null) {
+            return;
+        }
+        recordTokens(feature, model, "prompt", usage.getPromptTokenCount());
+        recordTokens(feature, model, "output", usage.getCandidatesTokenCount());
+        recordTokens(feature, model, "thoughts", usage.getThoughtsTokenCount());
+
+        GeminiConfig.Pricing price = geminiConfig.getPricing().get(model);
+        if (price != null) {
+            // Thinking tokens are billed at the output rate
+            double cost = tokens(usage.getPromptTokenCount()) * price.getInputPerMillion() / 1_000_000
+                    + (tokens(usage.getCandidatesTokenCount()) + tokens(usage.getThoughtsTokenCount()))
+                    * price.getOutputPerMillion() / 1_000_000;
+            Counter.builder("gemini.cost")
+                    .description("Estimated Gemini spend")
+                    .baseUnit("usd")
+                    .tag("feature", feature.key())
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .increment(cost);
+        }
+    }
+
+    void recordFailure(GeminiFeature feature, String model, long nanos, int retries, Throwable e) {
+        record(feature, model, e instanceof GeminiUnavailableException ? "rejected" : "error", nanos, retries);
+    }
+
+    void recordHedge(GeminiFeature feature, String model) {
+        Counter.builder("gemini.request.hedged")
+                .description("Duplicate requests sent because the primary exceeded the observed p95")
+                .tag("feature", feature.key())
+                .tag("model", model)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    void recordPromptCacheLookup(GeminiFeature feature, String result) {
+        Counter.builder("gemini.prompt_cache.lookups")
+                .description("Prompt result cache lookups by where the answer came from")
+                .tag("feature", feature.key())
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void record(GeminiFeature feature, String model, String outcome, long nanos, int retries) {
+        Timer.builder("gemini.request.duration")
+                .description("Gemini call latency including retries")
+                .tag("feature", feature.key())
+                .tag("model", model)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (retries > 0) {
+            Counter.builder("gemini.request.retries")
+                    .description("Gemini attempts retried after 429/503")
+                    .tag("feature", feature.key())
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .increment(retries);
+        }
+    }
+
+    private void recordTokens(GeminiFeature feature, String model, String type, Integer count) {
+        if (count == null) {
+            return;
+        }
+        DistributionSummary.builder("gemini.tokens")
+                .description("Tokens per Gemini call")
+                .baseUnit("tokens")
+                .tag("feature", feature.key())
+                .tag("model", model)
+                .tag("type", type)
+                .register(meterRegistry)
+                .record(count);
+    }
+
+    private static long tokens(Integer count) {
+        return count != null ? count : 0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.spendsense.service.ai;
+
+import com.spendsense.config.GeminiConfig;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the Gemini model for each call and decides when to hedge.
+ *
+ * Routing: text prompts up to gemini.api.routing.light-max-prompt-chars and
+ * images up to light-max-image-bytes go to the light model; anything larger to
+ * the configured model / vision-model.
+ *
+ * Hedging: successful call latencies are kept per model in a small ring buffer;
+ * the hedge delay is their p95 (floored at min-delay-ms). Hedges are paid for
+ * from a budget that earns budget-percent/100 of a token per hedgeable request,
+ * capped at max-burst, so hedging can never more than add that fraction of calls.
+ */
+@Component
+public class GeminiModelRouter {
+
+    private static final int LATENCY_WINDOW = 200;
+
+    private final GeminiConfig geminiConfig;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final Object budgetLock = new Object();
+    private double hedgeTokens;
+
+    public GeminiModelRouter(GeminiConfig geminiConfig) {
+        this.geminiConfig = geminiConfig;
+        this.hedgeTokens = geminiConfig.getHedging().getMaxBurst();
+    }
+
+    /**
+     * @param inputSize prompt length in chars, or image size in bytes for vision features
+     */
+    public String route(GeminiFeature feature, int inputSize) {
+        GeminiConfig.Routing routing = geminiConfig.getRouting();
+        if (feature.vision()) {
+            return inputSize <= routing.getLightMaxImageBytes()
+                    ? routing.getLightVisionModel()
+                    : geminiConfig.getVisionModel();
+        }
+        return inputSize <= routing.getLightMaxPromptChars()
+                ? routing.getLightModel()
+                : geminiConfig.getModel();
+    }
+
+    public void recordLatency(String model, long nanos) {
+        latencies.computeIfAbsent(model, m -> new LatencyWindow()).record(nanos);
+    }
+
+    /**
+     * How long to wait before hedging a call to {@code model}, or empty when
+     * hedging is off, the feature is not idempotent or there are too few samples.
+     * Each hedgeable request also earns its share of the hedge budget here.
+     */
+    public Optional<Duration> hedgeDelay(GeminiFeature feature, String model) {
+        GeminiConfig.Hedging hedging = geminiConfig.getHedging();
+        if (!hedging.isEnabled() || !feature.hedgeable()) {
+            return Optional.empty();
+        }
+        synchronized (budgetLock) {
+            hedgeTokens = Math.min(hedging.getMaxBurst(), hedgeTokens + hedging.getBudgetPercent() / 100.0);
+        }
+        LatencyWindow window = latencies.get(model);
+        if (window == null) {
+            return Optional.empty();
+        }
+        return window.p95(hedging.getMinSamples())
+                .map(p95 -> Duration.ofNanos(Math.max(p95, TimeUnit.MILLISECONDS.toNanos(hedging.getMinDelayMs()))));
+    }
+
+    /** Spends one hedge from the budget; false if the budget is exhausted. */
+    public boolean tryAcquireHedge() {
+        synchronized (budgetLock) {
+            if (hedgeTokens < 1) {
+                return false;
+            }
+            hedgeTokens -= 1;
+            return true;
+        }
+    }
+
+    private static final class LatencyWindow {
+        private final long[] samples = new long[LATENCY_WINDOW];
+        private int next;
+        private int count;
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        synchronized Optional<Long> p95(int minSamples) {
+            if (count < minSamples) {
+                return Optional.empty();
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return Optional.of(sorted[(int) Math.ceil(count * 0.95) - 1]);
+        }
+    }
+}
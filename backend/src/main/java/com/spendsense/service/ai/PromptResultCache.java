@@ -0,0 +1,170 @@
+package com.spendsense.service.ai;
+
+import com.spendsense.model.AiPromptResult;
+import com.spendsense.repository.AiPromptResultRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Content-addressed cache of Gemini answers.
+ *
+ * Key: SHA-256 of (model, prompt), where model is what {@link GeminiModelRouter}
+ * picks for the prompt. Prompts are built from a fixed template plus the compact
+ * context, so the key changes exactly when the template, the model or the
+ * underlying aggregates change — never because time passed.
+ *
+ * Lookup order: Redis ("aiPromptResults", 7d) → ai_prompt_results table → Gemini.
+ * Entries are shared across users; rows unused for a while are pruned by the
+ * weekly cleanup job.
+ *
+ * A fresh Gemini answer is not stored here automatically: the caller stores it
+ * with {@link #store} once it has parsed into the expected shape, and evicts
+ * the key with {@link #evict} when a stored answer turns out not to parse, so
+ * a malformed answer is never replayed for every later identical prompt.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PromptResultCache {
+
+    static final String CACHE_NAME = "aiPromptResults";
+
+    private final GeminiClientService geminiClient;
+    private final GeminiModelRouter modelRouter;
+    private final AiPromptResultRepository promptResultRepository;
+    private final CacheManager cacheManager;
+    private final GeminiMetrics metrics;
+
+    /**
+     * Returns the stored answer for this prompt, or calls Gemini. A fresh answer
+     * is returned with {@code cached == false} and is not stored yet.
+     */
+    public Mono<Answer> generate(GeminiFeature feature, String prompt) {
+        return generate(feature, prompt, () -> {
+        });
+    }
+
+    /**
+     * As {@link #generate(GeminiFeature, String)}, but runs {@code beforeGeminiCall}
+     * first when Gemini is actually called — e.g. to take a rate-limit token only
+     * for real calls. It runs on bounded-elastic and may block.
+     */
+    public Mono<Answer> generate(GeminiFeature feature, String prompt, Runnable beforeGeminiCall) {
+        String key = sha256(modelRouter.route(feature, prompt.length()), prompt);
+        return find(feature, key)
+                .map(Answer::fromCache)
+                .switchIfEmpty(Mono.fromRunnable(beforeGeminiCall)
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .then(Mono.defer(() -> geminiClient.generateContentAsync(feature, prompt)))
+                        .map(Answer::fromGemini));
+    }
+
+    /** Cached answer for this prompt, if any (no Gemini call). */
+    public Mono<String> lookup(GeminiFeature feature, String prompt) {
+        return find(feature, sha256(modelRouter.route(feature, prompt.length()), prompt));
+    }
+
+    /** Stores a checked answer for this prompt. Blocking. */
+    public void store(GeminiFeature feature, String prompt, String response) {
+        String model = modelRouter.route(feature, prompt.length());
+        store(sha256(model, prompt), feature, model, response);
+    }
+
+    /** Drops the stored answer for this prompt from Redis and the database. Blocking. */
+    public void evict(GeminiFeature feature, String prompt) {
+        String key = sha256(modelRouter.route(feature, prompt.length()), prompt);
+        try {
+            cache().evict(key);
+            promptResultRepository.deleteById(key);
+            log.info("[PROMPT CACHE] Evicted unusable answer {}", key);
+        } catch (Exception e) {
+            log.warn("[PROMPT CACHE] Failed to evict {}: {}", key, e.getMessage());
+        }
+    }
+
+    /** A Gemini answer and whether it came from the cache rather than a fresh call. */
+    public record Answer(String text, boolean cached) {
+        static Answer fromCache(String text) {
+            return new Answer(text, true);
+        }
+
+        static Answer fromGemini(String text) {
+            return new Answer(text, false);
+        }
+    }
+
+    /** Hex SHA-256 of the given parts, newline-joined. */
+    static String sha256(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Mono<String> find(GeminiFeature feature, String key) {
+        return Mono.fromCallable(() -> {
+                    String cached = cache().get(key, String.class);
+                    if (cached != null) {
+                        log.debug("[PROMPT CACHE] Redis HIT {}", key);
+                        metrics.recordPromptCacheLookup(feature, "redis");
+                        return Optional.of(cached);
+                    }
+                    Optional<String> stored = promptResultRepository.findById(key).map(AiPromptResult::getResponse);
+                    stored.ifPresent(response -> {
+                        log.debug("[PROMPT CACHE] Database HIT {}", key);
+                        promptResultRepository.touch(key, LocalDateTime.now());
+                        cache().put(key, response);
+                    });
+                    metrics.recordPromptCacheLookup(feature, stored.isPresent() ? "database" : "miss");
+                    return stored;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    private void store(String key, GeminiFeature feature, String model, String response) {
+        if (response == null || response.isBlank()) {
+            return;
+        }
+        try {
+            promptResultRepository.save(AiPromptResult.builder()
+                    .promptHash(key)
+                    .feature(feature.key())
+                    .model(model)
+                    .response(response)
+                    .lastUsedAt(LocalDateTime.now())
+                    .build());
+            cache().put(key, response);
+        } catch (DataIntegrityViolationException race) {
+            // Another request stored the same prompt first — either answer is fine
+            log.debug("[PROMPT CACHE] Concurrent store for {}", key);
+        } catch (Exception e) {
+            // Caching is best-effort; the caller still gets its answer
+            log.warn("[PROMPT CACHE] Failed to store {}: {}", key, e.getMessage());
+        }
+    }
+
+    private Cache cache() {
+        return Objects.requireNonNull(cacheManager.getCache(CACHE_NAME), CACHE_NAME + " cache is not configured");
+    }
+}
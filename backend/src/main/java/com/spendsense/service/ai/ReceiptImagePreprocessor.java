@@ -0,0 +1,316 @@
+package com.spendsense.service.ai;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HexFormat;
+import java.util.Iterator;
+
+/**
+ * Shrinks receipt photos before they are sent to Gemini Vision.
+ *
+ * Steps: apply the EXIF orientation, downscale so the long side is at most
+ * receipts.preprocess.max-dimension, optionally convert to grayscale, and
+ * re-encode as JPEG at receipts.preprocess.jpeg-quality. Re-encoding drops all
+ * metadata (EXIF, GPS). Large photos are subsampled while decoding so a phone
+ * photo is never fully expanded in memory.
+ *
+ * Formats ImageIO cannot decode (HEIC, PDF) and images that would not get
+ * smaller are passed through unchanged. Only the copy sent to Gemini is
+ * affected; the original is what gets stored.
+ *
+ * Also computes the perceptual hash used to spot re-uploaded receipts.
+ */
+@Component
+@Slf4j
+public class ReceiptImagePreprocessor {
+
+    private static final String OUTPUT_MIME_TYPE = "image/jpeg";
+
+    /** dHash grid is HASH_SIZE x HASH_SIZE comparisons → 256 bits */
+    private static final int HASH_SIZE = 16;
+    /** Images are decoded at roughly this long side (subsampled) before hashing */
+    private static final int HASH_DECODE_SIZE = 128;
+
+    private final boolean enabled;
+    private final int maxDimension;
+    private final boolean grayscale;
+    private final float jpegQuality;
+
+    public ReceiptImagePreprocessor(
+            @Value("${receipts.preprocess.enabled:true}") boolean enabled,
+            @Value("${receipts.preprocess.max-dimension:1600}") int maxDimension,
+            @Value("${receipts.preprocess.grayscale:true}") boolean grayscale,
+            @Value("${receipts.preprocess.jpeg-quality:0.8}") float jpegQuality) {
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.grayscale = grayscale;
+        this.jpegQuality = jpegQuality;
+    }
+
+    public record PreparedImage(byte[] data, String mimeType) {
+    }
+
+    public PreparedImage prepare(byte[] imageData, String mimeType) {
+        if (!enabled) {
+            return new PreparedImage(imageData, mimeType);
+        }
+        try {
+            BufferedImage source = decode(imageData, maxDimension);
+            if (source == null) {
+                log.debug("No ImageIO reader for {} — sending receipt unchanged", mimeType);
+                return new PreparedImage(imageData, mimeType);
+            }
+            byte[] encoded = encodeJpeg(transform(source, readOrientation(imageData)));
+            if (encoded.length >= imageData.length) {
+                return new PreparedImage(imageData, mimeType);
+            }
+            log.debug("Receipt image preprocessed: {} KB {} → {} KB jpeg",
+                    imageData.length / 1024, mimeType, encoded.length / 1024);
+            return new PreparedImage(encoded, OUTPUT_MIME_TYPE);
+        } catch (Exception e) {
+            log.warn("Receipt image preprocessing failed, sending original: {}", e.getMessage());
+            return new PreparedImage(imageData, mimeType);
+        }
+    }
+
+    /**
+     * 256-bit difference hash (dHash) of the image as hex, or null if it cannot
+     * be decoded. The image is box-averaged down to a 17x16 grayscale grid and
+     * each bit records whether a cell is brighter than its right neighbour, so
+     * re-encoding, resizing and small exposure changes barely move the hash.
+     */
+    public String differenceHash(byte[] imageData) {
+        try {
+            BufferedImage image = decode(imageData, HASH_DECODE_SIZE);
+            if (image == null) {
+                return null;
+            }
+            int[][] cells = averageLuminance(image, HASH_SIZE + 1, HASH_SIZE);
+            byte[] hash = new byte[HASH_SIZE * HASH_SIZE / 8];
+            int bit = 0;
+            for (int y = 0; y < HASH_SIZE; y++) {
+                for (int x = 0; x < HASH_SIZE; x++, bit++) {
+                    if (cells[y][x] > cells[y][x + 1]) {
+                        hash[bit >> 3] |= (byte) (1 << (7 - (bit & 7)));
+                    }
+                }
+            }
+            return HexFormat.of().formatHex(hash);
+        } catch (Exception e) {
+            log.debug("Could not hash receipt image: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /** Number of differing bits between two {@link #differenceHash} values. */
+    public static int hammingDistance(String hash, String other) {
+        byte[] a = HexFormat.of().parseHex(hash);
+        byte[] b = HexFormat.of().parseHex(other);
+        int distance = 0;
+        for (int i = 0; i < a.length; i++) {
+            distance += Integer.bitCount((a[i] ^ b[i]) & 0xFF);
+        }
+        return distance;
+    }
+
+    /** Mean luminance of each cell of a {@code columns} x {@code rows} grid over the image. */
+    private static int[][] averageLuminance(BufferedImage image, int columns, int rows) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[][] cells = new int[rows][columns];
+        for (int row = 0; row < rows; row++) {
+            int y0 = row * height / rows;
+            int y1 = Math.max(y0 + 1, (row + 1) * height / rows);
+            for (int column = 0; column < columns; column++) {
+                int x0 = column * width / columns;
+                int x1 = Math.max(x0 + 1, (column + 1) * width / columns);
+                long sum = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        int rgb = image.getRGB(x, y);
+                        sum += (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000;
+                    }
+                }
+                cells[row][column] = (int) (sum / ((long) (y1 - y0) * (x1 - x0)));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Decodes the image, subsampling rows/columns when it is more than twice
+     * {@code targetLongSide} so memory stays proportional to the output.
+     */
+    private BufferedImage decode(byte[] imageData, int targetLongSide) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longSide / (2 * targetLongSide));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** EXIF orientation (1–8), or 1 if absent. */
+    private int readOrientation(byte[] imageData) {
+        try {
+            Metadata metadata = ImageMetadataReader.readMetadata(new ByteArrayInputStream(imageData));
+            ExifIFD0Directory exif = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+            if (exif != null && exif.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
+                return exif.getInt(ExifIFD0Directory.TAG_ORIENTATION);
+            }
+        } catch (Exception e) {
+            log.debug("Could not read EXIF orientation: {}", e.getMessage());
+        }
+        return 1;
+    }
+
+    /**
+     * Scales, rotates/flips per EXIF orientation and (optionally) drops colour
+     * in a single draw onto the output image.
+     */
+    private BufferedImage transform(BufferedImage source, int orientation) {
+        source = halveUntilWithin(source);
+
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        boolean swapsAxes = orientation >= 5 && orientation <= 8;
+
+        BufferedImage target = new BufferedImage(
+                swapsAxes ? height : width,
+                swapsAxes ? width : height,
+                grayscale ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+
+        AffineTransform transform = orientationTransform(orientation, width, height);
+        transform.scale(scale, scale);
+
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // Transparent PNG areas become white, not black
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, target.getWidth(), target.getHeight());
+            g.drawImage(source, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Bilinear filtering only looks at neighbouring pixels, so a single large
+     * reduction aliases small receipt text; step down by halves first.
+     */
+    private BufferedImage halveUntilWithin(BufferedImage image) {
+        while (Math.max(image.getWidth(), image.getHeight()) > 2 * maxDimension) {
+            BufferedImage half = new BufferedImage(image.getWidth() / 2, image.getHeight() / 2,
+                    BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = half.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, half.getWidth(), half.getHeight());
+                g.drawImage(image, 0, 0, half.getWidth(), half.getHeight(), null);
+            } finally {
+                g.dispose();
+            }
+            image = half;
+        }
+        return image;
+    }
+
+    /**
+     * Maps the (already scaled) {@code width} x {@code height} image to the
+     * upright orientation described by the EXIF tag.
+     */
+    private static AffineTransform orientationTransform(int orientation, int width, int height) {
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2 -> { // Mirror horizontal
+                t.scale(-1.0, 1.0);
+                t.translate(-width, 0);
+            }
+            case 3 -> { // Rotate 180
+                t.translate(width, height);
+                t.rotate(Math.PI);
+            }
+            case 4 -> { // Mirror vertical
+                t.scale(1.0, -1.0);
+                t.translate(0, -height);
+            }
+            case 5 -> { // Transpose
+                t.rotate(-Math.PI / 2);
+                t.scale(-1.0, 1.0);
+            }
+            case 6 -> { // Rotate 90 CW
+                t.translate(height, 0);
+                t.rotate(Math.PI / 2);
+            }
+            case 7 -> { // Transverse
+                t.scale(-1.0, 1.0);
+                t.translate(-height, 0);
+                t.translate(0, width);
+                t.rotate(3 * Math.PI / 2);
+            }
+            case 8 -> { // Rotate 90 CCW
+                t.translate(0, width);
+                t.rotate(3 * Math.PI / 2);
+            }
+            default -> {
+                // 1 = upright
+            }
+        }
+        return t;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            // No metadata passed: EXIF/GPS from the original is not carried over
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,299 @@
+package com.spendsense.service.ai;
+
+import com.spendsense.dto.response.ReceiptScanBatchResponse;
+import com.spendsense.dto.response.ReceiptScanJobResponse;
+import com.spendsense.exception.BadRequestException;
+import com.spendsense.exception.ResourceNotFoundException;
+import com.spendsense.model.ReceiptScanBatch;
+import com.spendsense.model.ReceiptScanBatchItem;
+import com.spendsense.repository.ReceiptScanBatchItemRepository;
+import com.spendsense.repository.ReceiptScanBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Scans many receipts from one upload (several files and/or ZIP archives).
+ *
+ * Every accepted file becomes an ordinary receipt scan job (see
+ * {@link ReceiptScanJobService}), so a batch shares the worker pool, and with it
+ * the receipts.scan.workers concurrency cap and the Gemini call guard, with
+ * single scans. Duplicate detection applies per file.
+ *
+ * ZIP archives are read entry by entry straight from the upload; each entry is
+ * capped at file.upload.max-size-mb and a batch at receipts.scan.batch.max-files
+ * receipts. Across the whole batch at most receipts.scan.batch.max-zip-entries
+ * entries are examined and receipts.scan.batch.max-unzipped-size bytes
+ * decompressed; once any limit is reached the rest of the archive is not read
+ * and it gets a single rejection, so neither the work nor the rejected list
+ * grows with the number of entries in an archive.
+ */
+@Service
+@Slf4j
+public class ReceiptScanBatchService {
+
+    private final ReceiptScanJobService jobService;
+    private final ReceiptScanBatchRepository batchRepository;
+    private final ReceiptScanBatchItemRepository itemRepository;
+    private final int maxFiles;
+    private final int maxFileSizeBytes;
+    private final int maxZipEntries;
+    private final long maxUnzippedBytes;
+
+    public ReceiptScanBatchService(
+            ReceiptScanJobService jobService,
+            ReceiptScanBatchRepository batchRepository,
+            ReceiptScanBatchItemRepository itemRepository,
+            @Value("${receipts.scan.batch.max-files:50}") int maxFiles,
+            @Value("${file.upload.max-size-mb:10}") int maxSizeMb,
+            @Value("${receipts.scan.batch.max-zip-entries:200}") int maxZipEntries,
+            @Value("${receipts.scan.batch.max-unzipped-size:200MB}") DataSize maxUnzippedSize) {
+        this.jobService = jobService;
+        this.batchRepository = batchRepository;
+        this.itemRepository = itemRepository;
+        this.maxFiles = maxFiles;
+        this.maxFileSizeBytes = maxSizeMb * 1024 * 1024;
+        this.maxZipEntries = maxZipEntries;
+        this.maxUnzippedBytes = maxUnzippedSize.toBytes();
+    }
+
+    /**
+     * One event of {@link #streamBatch}: a receipt that finished, or (last) the
+     * whole batch once every receipt has.
+     */
+    public record BatchStreamEvent(ReceiptScanBatchResponse.Item item, ReceiptScanBatchResponse batch) {
+        public boolean isComplete() {
+            return batch != null;
+        }
+    }
+
+    public ReceiptScanBatchResponse submit(List<MultipartFile> files, UUID userId) {
+        ReceiptScanBatch batch = batchRepository.save(ReceiptScanBatch.builder()
+                .userId(userId)
+                .createdAt(LocalDateTime.now())
+                .build());
+        Accepted accepted = new Accepted(batch.getId(), userId);
+
+        for (MultipartFile file : files) {
+            if (isZip(file)) {
+                readZip(file, accepted);
+            } else if (accepted.full()) {
+                accepted.reject(file.getOriginalFilename(), batchLimitMessage());
+            } else if (file.getSize() > maxFileSizeBytes) {
+                accepted.reject(file.getOriginalFilename(), tooLargeMessage());
+            } else {
+                try {
+                    accepted.add(file.getOriginalFilename(), file.getBytes());
+                } catch (IOException e) {
+                    accepted.reject(file.getOriginalFilename(), "Could not read file");
+                }
+            }
+        }
+
+        if (accepted.items.isEmpty()) {
+            batchRepository.delete(batch);
+            throw new BadRequestException("None of the uploaded files is a supported receipt: "
+                    + accepted.rejected.stream()
+                    .map(r -> r.getFilename() + " (" + r.getError() + ")")
+                    .collect(Collectors.joining(", ")));
+        }
+        log.info("Receipt scan batch {} for user {}: {} accepted, {} rejected",
+                batch.getId(), userId, accepted.items.size(), accepted.rejected.size());
+
+        return ReceiptScanBatchResponse.builder()
+                .batchId(batch.getId())
+                .total(accepted.items.size())
+                .finished((int) accepted.items.stream().filter(item -> item.getJob().isFinished()).count())
+                .items(accepted.items)
+                .rejected(accepted.rejected)
+                .createdAt(batch.getCreatedAt())
+                .build();
+    }
+
+    public ReceiptScanBatchResponse getBatch(UUID batchId, UUID userId) {
+        ReceiptScanBatch batch = batchRepository.findById(batchId)
+                .filter(b -> b.getUserId().equals(userId))
+                .orElseThrow(() -> new ResourceNotFoundException("Receipt scan batch not found"));
+
+        List<ReceiptScanBatchResponse.Item> items = itemRepository.findItems(batchId).stream()
+                .map(view -> ReceiptScanBatchResponse.Item.builder()
+                        .position(view.getPosition())
+                        .filename(view.getFilename())
+                        .job(jobService.toResponse(view))
+                        .build())
+                .toList();
+        return ReceiptScanBatchResponse.builder()
+                .batchId(batchId)
+                .total(items.size())
+                .finished((int) items.stream().filter(item -> item.getJob().isFinished()).count())
+                .items(items)
+                .createdAt(batch.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * Emits each receipt of the batch as soon as it is COMPLETED or FAILED
+     * (already finished ones first), then the whole batch. Same delivery as
+     * {@link ReceiptScanJobService#streamJob}: pushed for jobs finished on this
+     * instance, re-read periodically otherwise.
+     */
+    public Flux<BatchStreamEvent> streamBatch(UUID batchId, UUID userId) {
+        // Unknown or foreign batch: fail with 404 before the stream starts
+        Set<UUID> jobIds = getBatch(batchId, userId).getItems().stream()
+                .map(item -> item.getJob().getJobId())
+                .collect(Collectors.toSet());
+
+        return Flux.defer(() -> {
+            Set<Integer> emitted = new HashSet<>();
+            return Flux.merge(
+                            Flux.interval(Duration.ZERO, ReceiptScanJobService.STREAM_POLL_INTERVAL),
+                            jobService.finishedJobs().filter(jobIds::contains).map(id -> 0L))
+                    .onBackpressureDrop()
+                    .concatMap(tick -> Mono.fromCallable(() -> getBatch(batchId, userId))
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .concatMapIterable(batch -> {
+                        List<BatchStreamEvent> events = new ArrayList<>();
+                        for (ReceiptScanBatchResponse.Item item : batch.getItems()) {
+                            if (item.getJob().isFinished() && emitted.add(item.getPosition())) {
+                                events.add(new BatchStreamEvent(item, null));
+                            }
+                        }
+                        if (batch.isComplete()) {
+                            events.add(new BatchStreamEvent(null, batch));
+                        }
+                        return events;
+                    })
+                    .takeUntil(BatchStreamEvent::isComplete);
+        });
+    }
+
+    private void readZip(MultipartFile file, Accepted accepted) {
+        String archive = file.getOriginalFilename();
+        try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (accepted.full()) {
+                    accepted.reject(archive, batchLimitMessage() + "; remaining entries were not read");
+                    return;
+                }
+                if (++accepted.zipEntries > maxZipEntries) {
+                    accepted.reject(archive, "ZIP entry limit of " + maxZipEntries
+                            + " per batch reached; remaining entries were not read");
+                    return;
+                }
+                if (entry.isDirectory() || isHiddenEntry(entry.getName())) {
+                    continue;
+                }
+                String name = baseName(entry.getName());
+                long unzippedLeft = maxUnzippedBytes - accepted.unzippedBytes;
+                // Read at most one byte past either limit: enough to tell it is exceeded
+                byte[] data = zip.readNBytes((int) Math.min(maxFileSizeBytes, unzippedLeft) + 1);
+                accepted.unzippedBytes += data.length;
+                if (data.length > unzippedLeft) {
+                    accepted.reject(archive, String.format("Uncompressed size limit of %d MB per batch reached; "
+                            + "remaining entries were not read", maxUnzippedBytes / 1024 / 1024));
+                    return;
+                }
+                if (data.length > maxFileSizeBytes) {
+                    accepted.reject(name, tooLargeMessage());
+                } else {
+                    accepted.add(name, data);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not read receipt ZIP '{}': {}", file.getOriginalFilename(), e.getMessage());
+            accepted.reject(file.getOriginalFilename(), "Could not read ZIP archive");
+        }
+    }
+
+    private static boolean isZip(MultipartFile file) {
+        String contentType = file.getContentType();
+        String filename = file.getOriginalFilename();
+        return "application/zip".equals(contentType)
+                || "application/x-zip-compressed".equals(contentType)
+                || (filename != null && filename.toLowerCase().endsWith(".zip"));
+    }
+
+    /** macOS resource forks and dotfiles that archivers add next to the real files */
+    private static boolean isHiddenEntry(String name) {
+        return name.startsWith("__MACOSX/") || baseName(name).startsWith(".");
+    }
+
+    private static String baseName(String entryName) {
+        return entryName.substring(entryName.lastIndexOf('/') + 1);
+    }
+
+    private String batchLimitMessage() {
+        return "Batch limit of " + maxFiles + " receipts reached";
+    }
+
+    private String tooLargeMessage() {
+        return String.format("File size exceeds maximum limit of %d MB", maxFileSizeBytes / 1024 / 1024);
+    }
+
+    /** Files accepted into (and rejected from) the batch being built. */
+    private class Accepted {
+        private final UUID batchId;
+        private final UUID userId;
+        private final List<ReceiptScanBatchResponse.Item> items = new ArrayList<>();
+        private final List<ReceiptScanBatchResponse.Rejected> rejected = new ArrayList<>();
+        /** ZIP entries examined and bytes decompressed so far, across all archives of the batch */
+        private int zipEntries;
+        private long unzippedBytes;
+
+        Accepted(UUID batchId, UUID userId) {
+            this.batchId = batchId;
+            this.userId = userId;
+        }
+
+        boolean full() {
+            return items.size() >= maxFiles;
+        }
+
+        void add(String filename, byte[] data) {
+            ReceiptScanJobResponse job;
+            try {
+                job = jobService.submit(filename, data, userId);
+            } catch (BadRequestException e) {
+                reject(filename, e.getMessage());
+                return;
+            }
+            int position = items.size();
+            itemRepository.save(ReceiptScanBatchItem.builder()
+                    .batchId(batchId)
+                    .position(position)
+                    .jobId(job.getJobId())
+                    .filename(filename)
+                    .build());
+            items.add(ReceiptScanBatchResponse.Item.builder()
+                    .position(position)
+                    .filename(filename)
+                    .job(job)
+                    .build());
+        }
+
+        void reject(String filename, String error) {
+            rejected.add(ReceiptScanBatchResponse.Rejected.builder()
+                    .filename(filename)
+                    .error(error)
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.spendsense.service.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spendsense.dto.response.ReceiptScanJobResponse;
+import com.spendsense.dto.response.ReceiptScanResponse;
+import com.spendsense.exception.GeminiUnavailableException;
+import com.spendsense.exception.ResourceNotFoundException;
+import com.spendsense.model.ReceiptScanJob;
+import com.spendsense.model.enums.ReceiptScanStatus;
+import com.spendsense.repository.ReceiptScanJobRepository;
+import com.spendsense.service.FileStorageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous receipt scanning.
+ *
+ * {@link #submit} validates the upload, records a PENDING row in
+ * receipt_scan_jobs (image included) and returns at once; a bounded pool of
+ * receipts.scan.workers threads then stores the image and runs Gemini Vision.
+ * Results are read by polling {@link #getJob} or pushed by {@link #streamJob}.
+ *
+ * Durability:
+ * - jobs are claimed with a conditional UPDATE, so each runs on one worker even
+ * with several instances
+ * - PENDING jobs (queue full, redeploy, transient failure) are re-queued on
+ * startup and by a periodic sweep (ReceiptScanSweepScheduler)
+ * - PROCESSING jobs whose worker died are returned to PENDING after
+ * receipts.scan.stale-after
+ * - a job that hit a transient failure — GeminiUnavailableException, or a
+ * storage/network error (ResourceAccessException, 5xx from Appwrite) — is
+ * retried up to receipts.scan.max-attempts times; any other failure is final
+ *
+ * Re-uploads of the same receipt are answered from the earlier job (see
+ * {@link #submit}).
+ */
+@Service
+@Slf4j
+public class ReceiptScanJobService {
+
+    /** How often an open SSE stream re-reads the job when no local completion was signalled */
+    static final Duration STREAM_POLL_INTERVAL = Duration.ofSeconds(5);
+
+    private static final String FAILED_MESSAGE = "Could not read this receipt. Please enter the details manually.";
+
+    private final ReceiptScanJobRepository jobRepository;
+    private final FileStorageService fileStorageService;
+    private final ReceiptScanningService receiptScanningService;
+    private final ReceiptImagePreprocessor imagePreprocessor;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor workers;
+    private final int maxAttempts;
+    private final Duration staleAfter;
+    private final Duration nearMatchWindow;
+    private final int nearMatchMaxDistance;
+
+    /** Jobs handed to the pool and not yet finished, so the sweep does not queue them twice */
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+    /** Ids of jobs this instance finished, for open SSE streams */
+    private final Sinks.Many<UUID> finished = Sinks.many().multicast().directBestEffort();
+    private volatile boolean shuttingDown;
+
+    public ReceiptScanJobService(
+            ReceiptScanJobRepository jobRepository,
+            FileStorageService fileStorageService,
+            ReceiptScanningService receiptScanningService,
+            ReceiptImagePreprocessor imagePreprocessor,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${receipts.scan.workers:4}") int workerCount,
+            @Value("${receipts.scan.queue-capacity:100}") int queueCapacity,
+            @Value("${receipts.scan.max-attempts:3}") int maxAttempts,
+            @Value("${receipts.scan.stale-after:5m}") Duration staleAfter,
+            @Value("${receipts.scan.dedupe.near-match-window:24h}") Duration nearMatchWindow,
+            @Value("${receipts.scan.dedupe.near-match-max-distance:10}") int nearMatchMaxDistance) {
+
+        this.jobRepository = jobRepository;
+        this.fileStorageService = fileStorageService;
+        this.receiptScanningService = receiptScanningService;
+        this.imagePreprocessor = imagePreprocessor;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.staleAfter = staleAfter;
+        this.nearMatchWindow = nearMatchWindow;
+        this.nearMatchMaxDistance = nearMatchMaxDistance;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("receipt-scan-"));
+
+        meterRegistry.gauge("receipt.scan.queued", workers, pool -> pool.getQueue().size());
+        meterRegistry.gauge("receipt.scan.active", workers, ThreadPoolExecutor::getActiveCount);
+    }
+
+    /**
+     * Records a scan job for this upload and queues it. Validation errors are
+     * thrown here, on the request thread, so the client still gets a 400.
+     *
+     * If the user already uploaded the same image (identical bytes), or a photo
+     * whose perceptual hash is within receipts.scan.dedupe.near-match-max-distance
+     * bits of one from the last near-match-window, that earlier job is returned
+     * instead — finished or still running — and nothing is stored or scanned.
+     */
+    public ReceiptScanJobResponse submit(MultipartFile file, UUID userId) {
+        // The only read of the upload: validation, hashing, the job row, storage
+        // and the Gemini request all work from this one array
+        byte[] imageData;
+        try {
+            imageData = file.getBytes();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read receipt upload", e);
+        }
+        return submit(file.getOriginalFilename(), imageData, userId);
+    }
+
+    /** Same as {@link #submit(MultipartFile, UUID)} for an upload already in memory (batch entries). */
+    ReceiptScanJobResponse submit(String originalFilename, byte[] imageData, UUID userId) {
+        String mimeType = fileStorageService.validateReceipt(originalFilename, imageData);
+
+        String contentSha256 = sha256(imageData);
+        Optional<ReceiptScanJobRepository.StatusView> exact = jobRepository
+                .findFirstByUserIdAndContentSha256AndStatusNotOrderByCreatedAtDesc(
+                        userId, contentSha256, ReceiptScanStatus.FAILED);
+        if (exact.isPresent()) {
+            return duplicate(exact.get(), "exact", userId);
+        }
+
+        String perceptualHash = imagePreprocessor.differenceHash(imageData);
+        Optional<ReceiptScanJobRepository.StatusView> similar = findNearMatch(perceptualHash, userId);
+        if (similar.isPresent()) {
+            return duplicate(similar.get(), "near", userId);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        ReceiptScanJob job = jobRepository.save(ReceiptScanJob.builder()
+                .userId(userId)
+                .status(ReceiptScanStatus.PENDING)
+                .originalFilename(originalFilename)
+                .mimeType(mimeType)
+                .imageData(imageData)
+                .contentSha256(contentSha256)
+                .perceptualHash(perceptualHash)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        log.info("Queued receipt scan job {} for user {}", job.getId(), userId);
+
+        enqueue(job.getId());
+        return ReceiptScanJobResponse.builder()
+                .jobId(job.getId())
+                .status(job.getStatus())
+                .createdAt(job.getCreatedAt())
+                .build();
+    }
+
+    private Optional<ReceiptScanJobRepository.StatusView> findNearMatch(String perceptualHash, UUID userId) {
+        if (perceptualHash == null) {
+            return Optional.empty();
+        }
+        UUID closest = null;
+        int closestDistance = nearMatchMaxDistance + 1;
+        for (ReceiptScanJobRepository.HashView candidate :
+                jobRepository.findRecentHashes(userId, LocalDateTime.now().minus(nearMatchWindow))) {
+            int distance = ReceiptImagePreprocessor.hammingDistance(perceptualHash, candidate.getPerceptualHash());
+            if (distance < closestDistance) {
+                closest = candidate.getId();
+                closestDistance = distance;
+            }
+        }
+        return closest == null ? Optional.empty() : jobRepository.findStatusByIdAndUserId(closest, userId);
+    }
+
+    private ReceiptScanJobResponse duplicate(ReceiptScanJobRepository.StatusView earlier, String match, UUID userId) {
+        log.info("Receipt upload by user {} matches job {} ({}) — reusing it", userId, earlier.getId(), match);
+        meterRegistry.counter("receipt.scan.duplicates", "match", match).increment();
+        return toResponse(earlier);
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public ReceiptScanJobResponse getJob(UUID jobId, UUID userId) {
+        return jobRepository.findStatusByIdAndUserId(jobId, userId)
+                .map(this::toResponse)
+                .orElseThrow(() -> new ResourceNotFoundException("Receipt scan job not found"));
+    }
+
+    /**
+     * Emits the job's state now and on every change until it is COMPLETED or
+     * FAILED. Completion on this instance is pushed immediately; a job finished
+     * by another instance is picked up by the periodic re-read.
+     */
+    public Flux<ReceiptScanJobResponse> streamJob(UUID jobId, UUID userId) {
+        // Unknown or foreign job: fail with 404 before the stream starts
+        getJob(jobId, userId);
+
+        return Flux.merge(
+                        Flux.interval(Duration.ZERO, STREAM_POLL_INTERVAL),
+                        finishedJobs().filter(jobId::equals).map(id -> 0L))
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromCallable(() -> getJob(jobId, userId))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .distinctUntilChanged(ReceiptScanJobResponse::getStatus)
+                .takeUntil(ReceiptScanJobResponse::isFinished);
+    }
+
+    /**
+     * Picks up jobs left behind by a previous instance or a full queue. Run on
+     * startup and periodically by ReceiptScanSweepScheduler.
+     */
+    public void requeueUnfinishedJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        int stale = jobRepository.requeueStale(now.minus(staleAfter), now);
+        if (stale > 0) {
+            log.warn("Returned {} stalled receipt scan job(s) to the queue", stale);
+        }
+        List<UUID> pending = jobRepository.findPendingIds();
+        if (!pending.isEmpty()) {
+            log.info("Re-queueing {} pending receipt scan job(s)", pending.size());
+            pending.forEach(this::enqueue);
+        }
+    }
+
+    private void enqueue(UUID jobId) {
+        if (shuttingDown || !queued.add(jobId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    process(jobId);
+                } finally {
+                    queued.remove(jobId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(jobId);
+            log.warn("Receipt scan queue is full — job {} stays pending until the next sweep", jobId);
+        }
+    }
+
+    private void process(UUID jobId) {
+        if (jobRepository.claim(jobId, LocalDateTime.now()) == 0) {
+            return; // Finished already, or claimed by another worker
+        }
+        // The only read of image_data: storage and Gemini share this array, and
+        // every later state change is a targeted UPDATE that leaves the column alone
+        ReceiptScanJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+
+        try {
+            String storedFilename = job.getStoredFilename();
+            if (storedFilename == null) {
+                storedFilename = fileStorageService.storeReceipt(
+                        job.getImageData(), job.getOriginalFilename(), job.getMimeType(), job.getUserId());
+                jobRepository.recordStoredFilename(jobId, storedFilename, LocalDateTime.now());
+            }
+
+            ReceiptScanResponse response = receiptScanningService.scanReceipt(job.getImageData(), job.getMimeType());
+            response.setReceiptUrl("/api/v1/receipts/" + storedFilename);
+            finish(jobId, ReceiptScanStatus.COMPLETED, objectMapper.writeValueAsString(response), null);
+            log.info("Receipt scan job {} completed: {}", jobId, storedFilename);
+        } catch (GeminiUnavailableException | ResourceAccessException | HttpServerErrorException e) {
+            // Gemini push-back, or a storage timeout or 5xx: likely to clear by the next sweep
+            if (job.getAttempts() < maxAttempts) {
+                log.warn("Receipt scan job {} hit a transient failure (attempt {}/{}) — will retry: {}",
+                        jobId, job.getAttempts(), maxAttempts, e.getMessage());
+                release(jobId);
+            } else {
+                log.error("Receipt scan job {} failed after {} attempts: {}", jobId, job.getAttempts(), e.getMessage());
+                finish(jobId, ReceiptScanStatus.FAILED, null, FAILED_MESSAGE);
+            }
+        } catch (Exception e) {
+            if (shuttingDown) {
+                log.info("Receipt scan job {} interrupted by shutdown — will resume on next startup", jobId);
+                release(jobId);
+            } else {
+                log.error("Receipt scan job {} failed", jobId, e);
+                finish(jobId, ReceiptScanStatus.FAILED, null, FAILED_MESSAGE);
+            }
+        }
+    }
+
+    /** Back to PENDING; the sweep queues it again. */
+    private void release(UUID jobId) {
+        jobRepository.release(jobId, LocalDateTime.now());
+    }
+
+    private void finish(UUID jobId, ReceiptScanStatus status, String result, String error) {
+        jobRepository.finish(jobId, status, result, error, LocalDateTime.now());
+        // Workers finish concurrently; the sink needs serialized emissions. A missed
+        // signal (no or slow subscriber) is harmless — streams also re-read the job.
+        synchronized (finished) {
+            finished.tryEmitNext(jobId);
+        }
+    }
+
+    /** Ids of jobs finished on this instance, as they finish. */
+    Flux<UUID> finishedJobs() {
+        return finished.asFlux();
+    }
+
+    ReceiptScanJobResponse toResponse(ReceiptScanJobRepository.StatusView view) {
+        ReceiptScanResponse result = null;
+        if (view.getResult() != null) {
+            try {
+                result = objectMapper.readValue(view.getResult(), ReceiptScanResponse.class);
+            } catch (JsonProcessingException e) {
+                log.error("Could not read stored result of receipt scan job {}", view.getId(), e);
+            }
+        }
+        return ReceiptScanJobResponse.builder()
+                .jobId(view.getId())
+                .status(view.getStatus())
+                .result(result)
+                .error(view.getError())
+                .createdAt(view.getCreatedAt())
+                .completedAt(view.getCompletedAt())
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        shuttingDown = true;
+        workers.shutdown();
+        if (!workers.awaitTermination(20, TimeUnit.SECONDS)) {
+            log.warn("Receipt scan workers still busy at shutdown — interrupting; their jobs resume on next startup");
+            workers.shutdownNow();
+        }
+    }
+}
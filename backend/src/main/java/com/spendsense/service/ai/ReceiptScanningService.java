@@ -2,17 +2,15 @@ package com.spendsense.service.ai;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.spendsense.dto.response.ReceiptScanResponse;
-import com.spendsense.service.FileStorageService;
+import com.spendsense.exception.GeminiUnavailableException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * AI-powered receipt scanning service using Gemini Vision
@@ -23,37 +21,28 @@ import java.util.UUID;
 public class ReceiptScanningService {
 
     private final GeminiClientService geminiClient;
-    private final FileStorageService fileStorageService;
+    private final ReceiptImagePreprocessor imagePreprocessor;
     private final ObjectMapper objectMapper;
 
     /**
-     * Scan receipt and extract transaction details
+     * Extract transaction details from a receipt image with Gemini Vision.
+     * The image is downscaled and re-encoded by {@link ReceiptImagePreprocessor}
+     * first; callers keep (and store) the original.
+     *
+     * Blocks until Gemini answers (retries included), so it is only called from
+     * the receipt scan workers ({@link ReceiptScanJobService}), never on a
+     * request thread. {@link GeminiUnavailableException} is passed through
+     * unwrapped so the job can be retried later.
      */
-    public ReceiptScanResponse scanReceipt(MultipartFile file, UUID userId) {
-        log.info("Scanning receipt for user: {}", userId);
-
+    public ReceiptScanResponse scanReceipt(byte[] imageBytes, String mimeType) {
         try {
-            // Read bytes and MIME type directly from the uploaded file —
-            // no need to upload to Appwrite and download back just for AI scanning.
-            byte[] imageBytes = file.getBytes();
-            String mimeType = file.getContentType() != null ? file.getContentType() : "image/jpeg";
-
-            // Store the receipt in Appwrite (for later retrieval via /receipts/{filename})
-            String storedFilename = fileStorageService.storeReceipt(file, userId);
-
-            // Call Gemini Vision API
-            String aiResponse = geminiClient.generateContentWithImage(
-                    buildReceiptPrompt(), imageBytes, mimeType);
-
-            // Parse response
-            ReceiptScanResponse response = parseReceiptResponse(aiResponse);
-            response.setReceiptUrl("/api/v1/receipts/" + storedFilename);
-
-            log.info("Receipt scanned successfully: {}", storedFilename);
-            return response;
-
+            ReceiptImagePreprocessor.PreparedImage image = imagePreprocessor.prepare(imageBytes, mimeType);
+            String aiResponse = geminiClient.generateContentWithImageAsync(
+                    buildReceiptPrompt(), image.data(), image.mimeType()).block();
+            return parseReceiptResponse(aiResponse);
+        } catch (GeminiUnavailableException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("Error scanning receipt for user: {}", userId, e);
             throw new RuntimeException("Failed to scan receipt: " + e.getMessage(), e);
         }
     }
@@ -0,0 +1,252 @@
+package com.spendsense.service.ai;
+
+import com.spendsense.model.Transaction;
+import com.spendsense.model.enums.TransactionType;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Deterministic, in-JVM spending anomaly detection. No I/O — the caller passes
+ * the user's expense history (typically the last {@link #HISTORY_DAYS} days)
+ * and only findings inside the last {@link #RECENT_DAYS} days are reported.
+ *
+ * Checks:
+ * - category weekly z-score: each category's spend in the last 7 days against
+ * the mean/stddev of its previous {@link #BASELINE_WEEKS} weekly totals; only
+ * categories with spend in at least {@link #MIN_ACTIVE_BASELINE_WEEKS} of those
+ * weeks are scored, and a category with no baseline spend at all is reported
+ * as a new category instead
+ * - transaction spikes: a single expense far above what the same merchant
+ * (normalised description) or, failing that, the same category usually costs,
+ * using a robust median/MAD z-score
+ * - duplicate charges: same account, amount and merchant within
+ * {@link #DUPLICATE_WINDOW}; recurring transactions are excluded
+ *
+ * Runs in O(n log n) over a few hundred transactions — well under a millisecond.
+ */
+@Component
+public class SpendingAnomalyDetector {
+
+    public static final int HISTORY_DAYS = 120;
+    static final int RECENT_DAYS = 30;
+    static final int BASELINE_WEEKS = 12;
+    static final int MIN_BASELINE_WEEKS = 4;
+    /** Baseline weeks a category needs spend in before its z-score means anything */
+    static final int MIN_ACTIVE_BASELINE_WEEKS = 3;
+    static final double CATEGORY_Z_THRESHOLD = 2.5;
+    /** Iglewicz–Hoaglin cut-off for the modified z-score */
+    static final double SPIKE_Z_THRESHOLD = 3.5;
+    static final int MIN_SPIKE_SAMPLES = 4;
+    static final Duration DUPLICATE_WINDOW = Duration.ofHours(48);
+    static final int MAX_FINDINGS = 5;
+
+    public enum Kind {
+        CATEGORY_SURGE, NEW_CATEGORY, MERCHANT_SPIKE, CATEGORY_SPIKE, DUPLICATE_CHARGE
+    }
+
+    /**
+     * One finding. {@code score} is comparable across kinds (higher = more
+     * unusual) and only used for ordering.
+     */
+    public record Anomaly(Kind kind, double score, String message) {
+    }
+
+    public List<Anomaly> detect(List<Transaction> history, LocalDateTime now) {
+        List<Transaction> expenses = history.stream()
+                .filter(t -> t.getType() == TransactionType.EXPENSE && t.getAmount() != null && t.getDate() != null)
+                .sorted(Comparator.comparing(Transaction::getDate))
+                .toList();
+
+        List<Anomaly> findings = new ArrayList<>();
+        findings.addAll(categorySurges(expenses, now));
+        findings.addAll(transactionSpikes(expenses, now));
+        findings.addAll(duplicateCharges(expenses, now));
+
+        return findings.stream()
+                .sorted(Comparator.comparingDouble(Anomaly::score).reversed())
+                .limit(MAX_FINDINGS)
+                .toList();
+    }
+
+    // ==================== Category weekly z-score ====================
+
+    private List<Anomaly> categorySurges(List<Transaction> expenses, LocalDateTime now) {
+        // weekly[category][0] = last 7 days, [1] = the 7 days before that, ...
+        Map<String, double[]> weekly = new HashMap<>();
+        LocalDateTime earliest = expenses.isEmpty() ? now : expenses.getFirst().getDate();
+        int weeksOfHistory = (int) Math.min(BASELINE_WEEKS, Duration.between(earliest, now).toDays() / 7);
+
+        for (Transaction t : expenses) {
+            long week = Duration.between(t.getDate(), now).toDays() / 7;
+            if (week < 0 || week > BASELINE_WEEKS) {
+                continue;
+            }
+            weekly.computeIfAbsent(category(t), c -> new double[BASELINE_WEEKS + 1])[(int) week]
+                    += t.getAmount().doubleValue();
+        }
+        if (weeksOfHistory < MIN_BASELINE_WEEKS) {
+            return List.of();
+        }
+
+        List<Anomaly> findings = new ArrayList<>();
+        for (Map.Entry<String, double[]> entry : weekly.entrySet()) {
+            double current = entry.getValue()[0];
+            double[] baseline = Arrays.copyOfRange(entry.getValue(), 1, weeksOfHistory + 1);
+            long activeWeeks = Arrays.stream(baseline).filter(v -> v > 0).count();
+            if (activeWeeks == 0) {
+                if (current > 0) {
+                    // No baseline to score against; ranked below every scored finding
+                    findings.add(new Anomaly(Kind.NEW_CATEGORY, CATEGORY_Z_THRESHOLD, String.format(Locale.ROOT,
+                            "New spending category: %s in %s in the last 7 days, with nothing there in the %d weeks before",
+                            money(current), entry.getKey(), weeksOfHistory)));
+                }
+                continue;
+            }
+            if (activeWeeks < MIN_ACTIVE_BASELINE_WEEKS) {
+                // Occasional category: a couple of past weeks say nothing about its spread
+                continue;
+            }
+            double mean = Arrays.stream(baseline).average().orElse(0);
+            double stddev = Math.sqrt(Arrays.stream(baseline).map(v -> (v - mean) * (v - mean)).sum() / baseline.length);
+            // Floor the spread so a perfectly flat history doesn't turn pennies into infinite z
+            double spread = Math.max(stddev, Math.max(mean * 0.1, 1.0));
+            double z = (current - mean) / spread;
+            if (z >= CATEGORY_Z_THRESHOLD && current > mean * 1.25) {
+                findings.add(new Anomaly(Kind.CATEGORY_SURGE, z, String.format(Locale.ROOT,
+                        "%s spending in the last 7 days is %s, %.1f standard deviations above your weekly average of %s",
+                        entry.getKey(), money(current), z, money(mean))));
+            }
+        }
+        return findings;
+    }
+
+    // ==================== Single-transaction spikes ====================
+
+    private List<Anomaly> transactionSpikes(List<Transaction> expenses, LocalDateTime now) {
+        LocalDateTime recentFrom = now.minusDays(RECENT_DAYS);
+        Map<String, List<Double>> byMerchant = new HashMap<>();
+        Map<String, List<Double>> byCategory = new HashMap<>();
+        List<Anomaly> findings = new ArrayList<>();
+
+        // Chronological: each transaction is compared only with what came before it
+        for (Transaction t : expenses) {
+            double amount = t.getAmount().doubleValue();
+            String merchant = merchant(t);
+            List<Double> merchantHistory = merchant != null
+                    ? byMerchant.computeIfAbsent(merchant, m -> new ArrayList<>())
+                    : List.of();
+            List<Double> categoryHistory = byCategory.computeIfAbsent(category(t), c -> new ArrayList<>());
+
+            if (!t.getDate().isBefore(recentFrom)) {
+                if (merchantHistory.size() >= MIN_SPIKE_SAMPLES) {
+                    double z = modifiedZ(amount, merchantHistory);
+                    if (z >= SPIKE_Z_THRESHOLD) {
+                        findings.add(new Anomaly(Kind.MERCHANT_SPIKE, z, String.format(Locale.ROOT,
+                                "%s charge of %s on %s is well above your usual %s there",
+                                displayName(t), money(amount), t.getDate().toLocalDate(),
+                                money(median(merchantHistory)))));
+                    }
+                } else if (categoryHistory.size() >= MIN_SPIKE_SAMPLES) {
+                    double z = modifiedZ(amount, categoryHistory);
+                    if (z >= SPIKE_Z_THRESHOLD) {
+                        findings.add(new Anomaly(Kind.CATEGORY_SPIKE, z, String.format(Locale.ROOT,
+                                "%s expense of %s on %s is unusually large for %s (typical: %s)",
+                                displayName(t), money(amount), t.getDate().toLocalDate(), category(t),
+                                money(median(categoryHistory)))));
+                    }
+                }
+            }
+            if (merchant != null) {
+                merchantHistory.add(amount);
+            }
+            categoryHistory.add(amount);
+        }
+        return findings;
+    }
+
+    /** Modified z-score 0.6745·(x − median)/MAD; only upward deviations count. */
+    private double modifiedZ(double value, List<Double> samples) {
+        double median = median(samples);
+        double mad = median(samples.stream().map(v -> Math.abs(v - median)).toList());
+        // MAD is 0 when most samples are identical (e.g. a fixed-price subscription)
+        double spread = Math.max(mad, Math.max(median * 0.05, 1.0));
+        return 0.6745 * (value - median) / spread;
+    }
+
+    private double median(List<Double> samples) {
+        double[] sorted = samples.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        int mid = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+    }
+
+    // ==================== Duplicate charges ====================
+
+    private List<Anomaly> duplicateCharges(List<Transaction> expenses, LocalDateTime now) {
+        LocalDateTime recentFrom = now.minusDays(RECENT_DAYS);
+        Map<DuplicateKey, Transaction> lastSeen = new HashMap<>();
+        List<Anomaly> findings = new ArrayList<>();
+
+        for (Transaction t : expenses) {
+            if (Boolean.TRUE.equals(t.getIsRecurring()) || t.getRecurringTemplateId() != null
+                    || t.getDate().isBefore(recentFrom.minus(DUPLICATE_WINDOW))) {
+                continue;
+            }
+            DuplicateKey key = new DuplicateKey(
+                    t.getAccount() != null ? t.getAccount().getId() : null,
+                    t.getAmount().stripTrailingZeros(),
+                    merchant(t) != null ? merchant(t) : category(t));
+            Transaction previous = lastSeen.put(key, t);
+            if (previous != null && !t.getDate().isBefore(recentFrom)
+                    && Duration.between(previous.getDate(), t.getDate()).compareTo(DUPLICATE_WINDOW) <= 0) {
+                long hours = Duration.between(previous.getDate(), t.getDate()).toHours();
+                // Closer together = more likely a genuine double charge
+                double score = SPIKE_Z_THRESHOLD + (DUPLICATE_WINDOW.toHours() - hours) / 12.0;
+                findings.add(new Anomaly(Kind.DUPLICATE_CHARGE, score, String.format(Locale.ROOT,
+                        "Possible duplicate charge: %s of %s on %s and again %s",
+                        displayName(t), money(t.getAmount().doubleValue()), previous.getDate().toLocalDate(),
+                        hours < 1 ? "within the hour" : "about " + hours + "h later")));
+            }
+        }
+        return findings;
+    }
+
+    private record DuplicateKey(UUID accountId, BigDecimal amount, String merchant) {
+    }
+
+    // ==================== Helpers ====================
+
+    private static String category(Transaction t) {
+        return t.getCategory() != null ? t.getCategory() : "Other";
+    }
+
+    /** Lower-cased description with digits and punctuation removed, or null if there is none. */
+    private static String merchant(Transaction t) {
+        if (t.getDescription() == null) {
+            return null;
+        }
+        String normalised = t.getDescription().toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L} ]", " ")
+                .replaceAll("\\s+", " ")
+                .trim();
+        return normalised.isEmpty() ? null : normalised;
+    }
+
+    private static String displayName(Transaction t) {
+        return t.getDescription() != null && !t.getDescription().isBlank() ? t.getDescription().trim() : category(t);
+    }
+
+    private static String money(double amount) {
+        return String.format(Locale.ROOT, "%,.2f", amount);
+    }
+}
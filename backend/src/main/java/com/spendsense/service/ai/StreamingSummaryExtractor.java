@@ -0,0 +1,95 @@
+package com.spendsense.service.ai;
+
+/**
+ * Pulls the value of the top-level "summary" field out of a JSON answer that
+ * arrives in fragments, so the decoded text can be forwarded before the JSON
+ * is complete. Not thread-safe; one instance per stream.
+ *
+ * Handles the standard JSON string escapes; an escape split across fragments
+ * is held back until the rest of it arrives. Markdown fences or preamble
+ * before the object are skipped naturally since only the "summary" key is
+ * looked for.
+ */
+final class StreamingSummaryExtractor {
+
+    private static final String KEY = "\"summary\"";
+
+    private final StringBuilder buffer = new StringBuilder();
+    /** Index of the next undecoded char of the summary value, or -1 until the value starts */
+    private int position = -1;
+    private boolean finished;
+
+    /**
+     * @return summary text decoded from this fragment (possibly empty)
+     */
+    String append(String fragment) {
+        buffer.append(fragment);
+        if (finished) {
+            return "";
+        }
+        if (position < 0 && !locateValue()) {
+            return "";
+        }
+
+        StringBuilder decoded = new StringBuilder();
+        while (position < buffer.length()) {
+            char c = buffer.charAt(position);
+            if (c == '"') {
+                finished = true;
+                break;
+            }
+            if (c != '\\') {
+                decoded.append(c);
+                position++;
+                continue;
+            }
+            if (position + 1 >= buffer.length()) {
+                break; // escape split across fragments
+            }
+            char escaped = buffer.charAt(position + 1);
+            if (escaped == 'u') {
+                if (position + 6 > buffer.length()) {
+                    break;
+                }
+                try {
+                    decoded.append((char) Integer.parseInt(buffer.substring(position + 2, position + 6), 16));
+                } catch (NumberFormatException e) {
+                    // Malformed escape — drop it rather than fail the stream
+                }
+                position += 6;
+                continue;
+            }
+            decoded.append(switch (escaped) {
+                case 'n' -> '\n';
+                case 't' -> '\t';
+                case 'r' -> '\r';
+                case 'b' -> '\b';
+                case 'f' -> '\f';
+                default -> escaped; // \" \\ \/
+            });
+            position += 2;
+        }
+        return decoded.toString();
+    }
+
+    /** Finds the opening quote of the summary value; false if it hasn't arrived yet. */
+    private boolean locateValue() {
+        int key = buffer.indexOf(KEY);
+        if (key < 0) {
+            return false;
+        }
+        for (int i = key + KEY.length(); i < buffer.length(); i++) {
+            char c = buffer.charAt(i);
+            if (c == '"') {
+                position = i + 1;
+                return true;
+            }
+            if (c != ':' && !Character.isWhitespace(c)) {
+                // "summary" was not followed by a string value; give up on streaming it
+                finished = true;
+                return false;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,285 @@
+package com.spendsense.service.storage;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Storage in Appwrite Storage buckets over its REST API — the default, since
+ * local disk on Render's free tier is ephemeral.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "storage.backend", havingValue = "appwrite", matchIfMissing = true)
+public class AppwriteStorageBackend implements StorageBackend {
+
+    /** Appwrite's chunk size: larger files must be uploaded in chunks of exactly this many bytes */
+    static final int CHUNK_SIZE = 5 * 1024 * 1024;
+
+    private final String appwriteEndpoint;
+    private final String receiptsBucketId;
+    private final String exportsBucketId;
+    private final RestTemplate appwriteRestTemplate;
+    private final ObjectMapper objectMapper;
+    private final int maxChunkAttempts;
+    /** Uploads chunks 2..n-1 of large files; shared by all uploads */
+    private final ExecutorService chunkUploads;
+
+    public AppwriteStorageBackend(
+            @Value("${appwrite.endpoint}") String appwriteEndpoint,
+            @Value("${appwrite.receipts-bucket-id}") String receiptsBucketId,
+            @Value("${appwrite.exports-bucket-id}") String exportsBucketId,
+            @Value("${appwrite.upload.parallel-chunks:3}") int parallelChunks,
+            @Value("${appwrite.upload.max-chunk-attempts:3}") int maxChunkAttempts,
+            @Qualifier("appwriteRestTemplate") RestTemplate appwriteRestTemplate,
+            ObjectMapper objectMapper) {
+
+        this.appwriteEndpoint = appwriteEndpoint;
+        this.receiptsBucketId = receiptsBucketId;
+        this.exportsBucketId = exportsBucketId;
+        this.appwriteRestTemplate = appwriteRestTemplate;
+        this.objectMapper = objectMapper;
+        this.maxChunkAttempts = maxChunkAttempts;
+        this.chunkUploads = Executors.newFixedThreadPool(Math.max(1, parallelChunks),
+                new CustomizableThreadFactory("appwrite-upload-"));
+
+        log.info("Appwrite storage backend initialized with endpoint: {}", appwriteEndpoint);
+    }
+
+    /**
+     * Files up to {@link #CHUNK_SIZE} go in one request. Larger ones are sent the
+     * way Appwrite expects them: {@value #CHUNK_SIZE}-byte chunks with a
+     * Content-Range header. The first chunk creates the file and goes alone;
+     * the middle chunks go in parallel (appwrite.upload.parallel-chunks); the last
+     * one goes once all others are in, since it completes the file. A failed chunk
+     * is retried on its own — chunks Appwrite already acknowledged are not resent.
+     */
+    @Override
+    public void put(StorageBucket bucket, String fileId, String filename, String mimeType, byte[] data) {
+        String url = appwriteEndpoint + "/storage/buckets/" + bucketId(bucket) + "/files";
+        if (data.length <= CHUNK_SIZE) {
+            uploadChunk(url, fileId, filename, data, 0, data.length, false);
+            return;
+        }
+
+        int chunks = (data.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        uploadChunkWithRetry(url, fileId, filename, data, 0);
+        List<CompletableFuture<Void>> middle = new ArrayList<>();
+        for (int chunk = 1; chunk < chunks - 1; chunk++) {
+            int index = chunk;
+            middle.add(CompletableFuture.runAsync(
+                    () -> uploadChunkWithRetry(url, fileId, filename, data, index), chunkUploads));
+        }
+        try {
+            CompletableFuture.allOf(middle.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        uploadChunkWithRetry(url, fileId, filename, data, chunks - 1);
+        log.debug("Uploaded {} in {} chunks", fileId, chunks);
+    }
+
+    private void uploadChunkWithRetry(String url, String fileId, String filename, byte[] data, int chunk) {
+        int offset = chunk * CHUNK_SIZE;
+        int length = Math.min(CHUNK_SIZE, data.length - offset);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                uploadChunk(url, fileId, filename, data, offset, length, true);
+                return;
+            } catch (ResourceAccessException | HttpServerErrorException e) {
+                // Network errors and 5xx are transient; 4xx (bad id, quota) are not
+                if (attempt >= maxChunkAttempts) {
+                    throw e;
+                }
+                log.warn("Chunk {} of {} failed (attempt {}/{}): {}",
+                        chunk, fileId, attempt, maxChunkAttempts, e.getMessage());
+                try {
+                    Thread.sleep(500L * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void uploadChunk(String url, String fileId, String filename, byte[] data,
+                             int offset, int length, boolean chunked) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        if (chunked) {
+            headers.set(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + offset + "-" + (offset + length - 1) + "/" + data.length);
+            if (offset > 0) {
+                headers.set("x-appwrite-id", fileId);
+            }
+        }
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("fileId", fileId);
+        body.add("file", new NamedByteRangeResource(data, offset, length, filename));
+
+        HttpEntity<MultiValueMap<String, Object>> request = new HttpEntity<>(body, headers);
+        appwriteRestTemplate.postForObject(url, request, String.class);
+    }
+
+    /**
+     * Copies the file through an 8 KB buffer. A range is forwarded to Appwrite;
+     * should it answer with the full file anyway (200 instead of 206), the
+     * requested bytes are cut out of the stream here.
+     */
+    @Override
+    public void read(StorageBucket bucket, String fileId, @Nullable ResourceRange range, OutputStream out) {
+        String url = appwriteEndpoint + "/storage/buckets/" + bucketId(bucket)
+                + "/files/" + fileId + "/download";
+        appwriteRestTemplate.execute(url, HttpMethod.GET,
+                request -> {
+                    if (range != null) {
+                        request.getHeaders().set(HttpHeaders.RANGE, "bytes=" + range.start() + "-" + range.end());
+                    }
+                },
+                response -> {
+                    if (range != null && !response.getStatusCode().isSameCodeAs(HttpStatus.PARTIAL_CONTENT)) {
+                        StreamUtils.copyRange(response.getBody(), out, range.start(), range.end());
+                    } else {
+                        StreamUtils.copy(response.getBody(), out);
+                    }
+                    return null;
+                });
+    }
+
+    @Override
+    public void delete(StorageBucket bucket, String fileId) {
+        String bucketId = bucketId(bucket);
+        try {
+            String url = appwriteEndpoint + "/storage/buckets/" + bucketId + "/files/" + fileId;
+            appwriteRestTemplate.delete(url);
+        } catch (HttpClientErrorException.NotFound e) {
+            log.warn("File not found in Appwrite (skipping delete): {}", fileId);
+        } catch (Exception e) {
+            log.error("Error deleting file '{}' from Appwrite bucket '{}': {}",
+                    fileId, bucketId, e.getMessage());
+        }
+    }
+
+    /**
+     * Lists the bucket and checks each file's Appwrite {@code $createdAt} timestamp.
+     */
+    @Override
+    public List<String> listExpired(StorageBucket bucket, Instant cutoff, int limit) {
+        List<String> expired = new ArrayList<>();
+        try {
+            String url = appwriteEndpoint + "/storage/buckets/" + bucketId(bucket)
+                    + "/files?queries[]=limit(" + limit + ")";
+            String response = appwriteRestTemplate.getForObject(url, String.class);
+            if (response == null) {
+                log.warn("Empty response when listing bucket {}", bucket);
+                return expired;
+            }
+
+            JsonNode root = objectMapper.readTree(response);
+            for (JsonNode fileNode : root.path("files")) {
+                String fileId = fileNode.path("$id").asText();
+                String createdAtRaw = fileNode.path("$createdAt").asText();
+                try {
+                    if (Instant.parse(createdAtRaw).isBefore(cutoff)) {
+                        expired.add(fileId);
+                    }
+                } catch (Exception e) {
+                    log.warn("Could not parse $createdAt '{}' for file '{}': {}",
+                            createdAtRaw, fileId, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error listing Appwrite bucket {}", bucket, e);
+        }
+        return expired;
+    }
+
+    @Override
+    public boolean isRemote() {
+        return true;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        chunkUploads.shutdown();
+    }
+
+    private String bucketId(StorageBucket bucket) {
+        return switch (bucket) {
+            case RECEIPTS -> receiptsBucketId;
+            case EXPORTS -> exportsBucketId;
+        };
+    }
+
+    /**
+     * A slice of an in-memory file for multipart uploads, exposing a filename so
+     * RestTemplate sets the correct Content-Disposition header. Chunks are read
+     * straight out of the upload's array rather than copied.
+     */
+    private static class NamedByteRangeResource extends AbstractResource {
+        private final byte[] data;
+        private final int offset;
+        private final int length;
+        private final String filename;
+
+        NamedByteRangeResource(byte[] data, int offset, int length, String filename) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.filename = filename != null ? filename : "file";
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(data, offset, length);
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public String getDescription() {
+            return "bytes " + offset + "-" + (offset + length - 1) + " of " + filename;
+        }
+    }
+}
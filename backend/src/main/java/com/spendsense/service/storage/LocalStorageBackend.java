@@ -0,0 +1,141 @@
+package com.spendsense.service.storage;
+
+import com.spendsense.exception.BadRequestException;
+import com.spendsense.exception.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Storage in a local directory, one subdirectory per bucket — for self-hosted
+ * deployments with a persistent disk, and for running without Appwrite.
+ *
+ * Files are written to a temp file and renamed into place, so readers never see
+ * a partial file; reads use {@link FileChannel#transferTo}. A file's modification
+ * time is its creation time, since stored files are never rewritten.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalStorageBackend implements StorageBackend {
+
+    /** Stored file ids are UUIDs or export names — this also keeps ids inside the directory */
+    private static final Pattern FILE_ID = Pattern.compile("[A-Za-z0-9_-]{1,100}");
+    private static final String TEMP_SUFFIX = ".part";
+
+    private final Path root;
+
+    public LocalStorageBackend(@Value("${storage.local.directory:./data/storage}") String directory) throws IOException {
+        this.root = Path.of(directory).toAbsolutePath().normalize();
+        for (StorageBucket bucket : StorageBucket.values()) {
+            Files.createDirectories(bucketDir(bucket));
+        }
+        log.info("Local storage backend initialized in {}", root);
+    }
+
+    @Override
+    public void put(StorageBucket bucket, String fileId, String filename, String mimeType, byte[] data) {
+        Path target = path(bucket, fileId);
+        try {
+            Path tmp = Files.createTempFile(bucketDir(bucket), fileId, TEMP_SUFFIX);
+            try {
+                Files.write(tmp, data);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store " + bucket + "/" + fileId, e);
+        }
+    }
+
+    @Override
+    public void read(StorageBucket bucket, String fileId, @Nullable ResourceRange range, OutputStream out)
+            throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path(bucket, fileId), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new ResourceNotFoundException("File not found");
+        }
+        try (channel) {
+            long size = channel.size();
+            long position = range != null ? range.start() : 0;
+            long end = range != null ? Math.min(range.end() + 1, size) : size;
+            WritableByteChannel target = Channels.newChannel(out);
+            while (position < end) {
+                position += channel.transferTo(position, end - position, target);
+            }
+        }
+    }
+
+    @Override
+    public void delete(StorageBucket bucket, String fileId) {
+        try {
+            if (!Files.deleteIfExists(path(bucket, fileId))) {
+                log.warn("File not found in local storage (skipping delete): {}", fileId);
+            }
+        } catch (IOException e) {
+            log.error("Error deleting file '{}' from local bucket '{}': {}", fileId, bucket, e.getMessage());
+        }
+    }
+
+    @Override
+    public List<String> listExpired(StorageBucket bucket, Instant cutoff, int limit) {
+        try (Stream<Path> files = Files.list(bucketDir(bucket))) {
+            return files
+                    .filter(file -> !file.getFileName().toString().endsWith(TEMP_SUFFIX))
+                    .filter(file -> modifiedBefore(file, cutoff))
+                    .limit(limit)
+                    .map(file -> file.getFileName().toString())
+                    .toList();
+        } catch (IOException e) {
+            log.error("Error listing local bucket {}", bucket, e);
+            return List.of();
+        }
+    }
+
+    @Override
+    public boolean isRemote() {
+        return false;
+    }
+
+    private Path bucketDir(StorageBucket bucket) {
+        return root.resolve(bucket.name().toLowerCase());
+    }
+
+    private Path path(StorageBucket bucket, String fileId) {
+        if (!FILE_ID.matcher(fileId).matches()) {
+            throw new BadRequestException("Invalid file id");
+        }
+        return bucketDir(bucket).resolve(fileId);
+    }
+
+    private static boolean modifiedBefore(Path file, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            // Deleted while listing
+            return false;
+        }
+    }
+}
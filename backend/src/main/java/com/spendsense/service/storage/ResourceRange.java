@@ -0,0 +1,9 @@
+package com.spendsense.service.storage;
+
+/** Inclusive byte range of a stored file. */
+public record ResourceRange(long start, long end) {
+
+    public long length() {
+        return end - start + 1;
+    }
+}
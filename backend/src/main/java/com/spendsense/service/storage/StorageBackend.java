@@ -0,0 +1,45 @@
+package com.spendsense.service.storage;
+
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Where receipt and export files live. Selected by {@code storage.backend}:
+ * {@code appwrite} (default) or {@code local}.
+ *
+ * File ids are generated by {@code FileStorageService} (UUIDs, export names);
+ * metadata such as owner, type and size is kept in the database, not here.
+ */
+public interface StorageBackend {
+
+    /**
+     * Store a file under {@code fileId}.
+     *
+     * @param filename original filename, for backends that record one
+     */
+    void put(StorageBucket bucket, String fileId, String filename, String mimeType, byte[] data);
+
+    /**
+     * Copy a file, or one byte range of it, to {@code out} without holding it in memory.
+     *
+     * @param range byte range to send, or null for the whole file
+     */
+    void read(StorageBucket bucket, String fileId, @Nullable ResourceRange range, OutputStream out)
+            throws IOException;
+
+    /** Delete a file; a file that is already gone is not an error. */
+    void delete(StorageBucket bucket, String fileId);
+
+    /** Ids of files created before {@code cutoff}, at most {@code limit} of them. */
+    List<String> listExpired(StorageBucket bucket, Instant cutoff, int limit);
+
+    /**
+     * Whether reads go over the network. Local reads are as fast as the
+     * on-disk file cache, so that cache is skipped for them.
+     */
+    boolean isRemote();
+}
@@ -0,0 +1,10 @@
+package com.spendsense.service.storage;
+
+/**
+ * The two kinds of stored files. Each backend maps them to its own container
+ * (an Appwrite bucket, a directory).
+ */
+public enum StorageBucket {
+    RECEIPTS,
+    EXPORTS
+}
@@ -0,0 +1,18 @@
+-- Links each generated occurrence back to the recurring template that produced it.
+-- The partial unique index on (template, occurrence date) makes the recurring job
+-- idempotent: re-running a chunk (or two workers racing) cannot insert the same
+-- occurrence twice — the batch INSERT uses ON CONFLICT DO NOTHING against it.
+ALTER TABLE transactions ADD COLUMN recurring_template_id UUID;
+
+ALTER TABLE transactions
+    ADD CONSTRAINT fk_transactions_recurring_template FOREIGN KEY (recurring_template_id)
+        REFERENCES transactions (id) ON DELETE SET NULL;
+
+CREATE UNIQUE INDEX uq_transactions_template_occurrence
+    ON transactions (recurring_template_id, date)
+    WHERE recurring_template_id IS NOT NULL;
+
+-- Claim query only ever scans due templates, so keep that index small.
+CREATE INDEX IF NOT EXISTS idx_transactions_recurring_due
+    ON transactions (next_recurring_date)
+    WHERE is_recurring = true;
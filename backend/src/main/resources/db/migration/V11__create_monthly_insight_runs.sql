@@ -0,0 +1,22 @@
+-- Checkpoint tables for the monthly insights email job.
+-- One run row per period (yyyy-MM); completed_at stays NULL until every user was
+-- attempted, so a crash or redeploy mid-run is resumed on the next startup.
+CREATE TABLE monthly_insight_runs
+(
+    period       VARCHAR(7) PRIMARY KEY,
+    started_at   TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP,
+    sent_count   INT       NOT NULL DEFAULT 0,
+    failed_count INT       NOT NULL DEFAULT 0
+);
+
+-- One row per user per period once their email was dispatched; resumed runs skip them.
+CREATE TABLE monthly_insight_deliveries
+(
+    id      UUID PRIMARY KEY,
+    user_id UUID       NOT NULL,
+    period  VARCHAR(7) NOT NULL,
+    sent_at TIMESTAMP  NOT NULL,
+    CONSTRAINT uq_monthly_insight_deliveries_user_period UNIQUE (user_id, period),
+    CONSTRAINT fk_monthly_insight_deliveries_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
@@ -0,0 +1,20 @@
+-- Content-addressed cache of Gemini answers.
+-- prompt_hash = SHA-256 of (model, full prompt); the prompt embeds both the
+-- template and the user's compact context, so identical aggregates — for the same
+-- user over time or across users — reuse the stored answer instead of a paid call.
+CREATE TABLE ai_prompt_results
+(
+    prompt_hash  VARCHAR(64) PRIMARY KEY,
+    feature      VARCHAR(40)  NOT NULL,
+    model        VARCHAR(100) NOT NULL,
+    response     TEXT         NOT NULL,
+    created_at   TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_used_at TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_ai_prompt_results_last_used ON ai_prompt_results (last_used_at);
+
+-- Hash of the compact context the stored insights were generated from; an expired
+-- row whose context is unchanged is simply extended instead of regenerated.
+ALTER TABLE ai_insights
+    ADD COLUMN context_hash VARCHAR(64);
@@ -0,0 +1,5 @@
+-- Insights, anomalies and budget recommendations are now produced by one
+-- generation and stored together in the same row.
+ALTER TABLE ai_insights
+    ADD COLUMN anomalies              JSONB,
+    ADD COLUMN budget_recommendations JSONB;
@@ -0,0 +1,25 @@
+-- Asynchronous receipt scans: POST /receipts/scan records a job and returns 202,
+-- a bounded worker pool uploads the image and runs Gemini Vision.
+-- The upload itself is kept in image_data until the job finishes, so pending jobs
+-- survive a restart or redeploy and are re-queued on startup.
+CREATE TABLE receipt_scan_jobs
+(
+    id                UUID PRIMARY KEY,
+    user_id           UUID         NOT NULL,
+    status            VARCHAR(16)  NOT NULL,
+    original_filename VARCHAR(255),
+    mime_type         VARCHAR(100) NOT NULL,
+    image_data        BYTEA,
+    stored_filename   VARCHAR(255),
+    result            JSONB,
+    error             TEXT,
+    attempts          INT          NOT NULL DEFAULT 0,
+    created_at        TIMESTAMP    NOT NULL,
+    updated_at        TIMESTAMP    NOT NULL,
+    completed_at      TIMESTAMP,
+    CONSTRAINT fk_receipt_scan_jobs_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+-- Re-queue scans on startup and in the periodic sweep
+CREATE INDEX idx_receipt_scan_jobs_unfinished ON receipt_scan_jobs (status, updated_at)
+    WHERE status IN ('PENDING', 'PROCESSING');
@@ -0,0 +1,10 @@
+-- Duplicate receipt detection: a re-upload of the same image (SHA-256) or a
+-- near-identical photo (256-bit difference hash, compared by Hamming distance in
+-- the service) returns the earlier job instead of storing and scanning again.
+ALTER TABLE receipt_scan_jobs
+    ADD COLUMN content_sha256  VARCHAR(64),
+    ADD COLUMN perceptual_hash VARCHAR(64);
+
+CREATE INDEX idx_receipt_scan_jobs_user_sha ON receipt_scan_jobs (user_id, content_sha256);
+CREATE INDEX idx_receipt_scan_jobs_user_created ON receipt_scan_jobs (user_id, created_at DESC)
+    WHERE perceptual_hash IS NOT NULL;
@@ -0,0 +1,22 @@
+-- Batch receipt scanning: one batch per upload of several files / a ZIP.
+-- Items point at receipt_scan_jobs; a duplicate entry points at the earlier job,
+-- so a job may appear in several batches.
+CREATE TABLE receipt_scan_batches
+(
+    id         UUID PRIMARY KEY,
+    user_id    UUID      NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_receipt_scan_batches_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+CREATE TABLE receipt_scan_batch_items
+(
+    id       UUID PRIMARY KEY,
+    batch_id UUID NOT NULL,
+    position INT  NOT NULL,
+    job_id   UUID NOT NULL,
+    filename VARCHAR(255),
+    CONSTRAINT uq_receipt_scan_batch_items_position UNIQUE (batch_id, position),
+    CONSTRAINT fk_receipt_scan_batch_items_batch FOREIGN KEY (batch_id) REFERENCES receipt_scan_batches (id) ON DELETE CASCADE,
+    CONSTRAINT fk_receipt_scan_batch_items_job FOREIGN KEY (job_id) REFERENCES receipt_scan_jobs (id) ON DELETE CASCADE
+);
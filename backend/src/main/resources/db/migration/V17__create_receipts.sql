@@ -0,0 +1,31 @@
+-- Metadata of every receipt stored in Appwrite, written when the file is stored.
+-- Serving a receipt reads Content-Type / Content-Length and the owner from here
+-- instead of downloading the file a second time to detect its type.
+CREATE TABLE receipts
+(
+    file_id    VARCHAR(64) PRIMARY KEY, -- Appwrite file id (stored filename without extension)
+    user_id    UUID         NOT NULL,
+    filename   VARCHAR(255) NOT NULL,   -- Stored filename "{fileId}.{ext}", as used in /receipts/{filename}
+    mime_type  VARCHAR(100),
+    size_bytes BIGINT,
+    sha256     VARCHAR(64),
+    created_at TIMESTAMP    NOT NULL,
+    CONSTRAINT fk_receipts_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_receipts_user ON receipts (user_id);
+
+-- Backfill owners of receipts stored before this table existed. Type, size and
+-- checksum are unknown for these; serving falls back to the file extension.
+INSERT INTO receipts (file_id, user_id, filename, mime_type, size_bytes, sha256, created_at)
+SELECT DISTINCT ON (file_id) file_id, user_id, filename, mime_type, NULL, content_sha256, created_at
+FROM (SELECT split_part(stored_filename, '.', 1) AS file_id, user_id, stored_filename AS filename,
+             mime_type, content_sha256, created_at
+      FROM receipt_scan_jobs
+      WHERE stored_filename IS NOT NULL
+      UNION ALL
+      SELECT split_part(substring(receipt_url FROM '[^/]+$'), '.', 1), user_id, substring(receipt_url FROM '[^/]+$'),
+             NULL, NULL, created_at
+      FROM transactions
+      WHERE receipt_url LIKE '%/receipts/%') AS known
+ORDER BY file_id, mime_type NULLS LAST, created_at;
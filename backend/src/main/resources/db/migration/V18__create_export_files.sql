@@ -0,0 +1,13 @@
+-- Every export file in storage, written when the file is stored. Expiry cleanup
+-- is an indexed query on expires_at instead of a listing of the exports bucket.
+CREATE TABLE export_files
+(
+    file_id    VARCHAR(100) PRIMARY KEY, -- Storage file id (export filename without extension)
+    filename   VARCHAR(255) NOT NULL,
+    mime_type  VARCHAR(100) NOT NULL,
+    size_bytes BIGINT       NOT NULL,
+    created_at TIMESTAMP    NOT NULL,
+    expires_at TIMESTAMP    NOT NULL
+);
+
+CREATE INDEX idx_export_files_expires_at ON export_files (expires_at);
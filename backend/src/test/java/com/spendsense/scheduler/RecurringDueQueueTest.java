@@ -0,0 +1,162 @@
+package com.spendsense.scheduler;
+
+import com.spendsense.repository.TransactionRepository;
+import com.spendsense.repository.TransactionRepository.RecurringSchedule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecurringDueQueueTest {
+
+    private TransactionRepository transactionRepository;
+    private TaskScheduler taskScheduler;
+    private ScheduledFuture<?> wakeUp;
+    private RecurringDueQueue queue;
+    private final List<Set<UUID>> fired = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository = mock(TransactionRepository.class);
+        taskScheduler = mock(TaskScheduler.class);
+        wakeUp = mock(ScheduledFuture.class);
+        // A wake-up that reports done is always re-armed, so every arm is observable
+        when(wakeUp.isDone()).thenReturn(true);
+        doReturn(wakeUp).when(taskScheduler).schedule(any(Runnable.class), any(Instant.class));
+        when(transactionRepository.findRecurringSchedulesDueBefore(any())).thenReturn(List.of());
+
+        queue = new RecurringDueQueue(transactionRepository, taskScheduler);
+        ReflectionTestUtils.setField(queue, "horizonHours", 48);
+        queue.onDue(fired::add);
+        queue.reload();
+    }
+
+    @Test
+    void rescheduledTemplateOnlyFiresAtItsLatestDate() {
+        UUID moved = UUID.randomUUID();
+        UUID due = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+
+        queue.schedule(moved, now.minusMinutes(2));
+        queue.schedule(moved, now.plusMinutes(30));
+        queue.schedule(due, now.minusMinutes(1));
+        fire();
+
+        assertThat(fired).containsExactly(Set.of(due));
+        assertThat(queue.size()).isEqualTo(1);
+    }
+
+    @Test
+    void templatesBeyondTheHorizonAreNotHeld() {
+        queue.schedule(UUID.randomUUID(), LocalDateTime.now().plusHours(72));
+
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void nullDateRemovesTheTemplate() {
+        UUID id = UUID.randomUUID();
+        queue.schedule(id, LocalDateTime.now().plusHours(1));
+
+        queue.schedule(id, null);
+
+        assertThat(queue.size()).isZero();
+        verify(wakeUp, atLeastOnce()).cancel(false);
+    }
+
+    @Test
+    void stillOverdueTemplateIsBackedOffInsteadOfRefiredAtOnce() {
+        UUID id = UUID.randomUUID();
+        returnSchedule(id, LocalDateTime.now().minusHours(1));
+
+        queue.refresh(List.of(id));
+
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(lastArmedDelay()).isCloseTo(Duration.ofMinutes(1).toMillis(), within(5_000L));
+    }
+
+    @Test
+    void backOffDoublesOnConsecutiveFailures() {
+        UUID id = UUID.randomUUID();
+        returnSchedule(id, LocalDateTime.now().minusHours(1));
+
+        queue.refresh(List.of(id));
+        queue.refresh(List.of(id));
+        queue.refresh(List.of(id));
+
+        assertThat(lastArmedDelay()).isCloseTo(Duration.ofMinutes(4).toMillis(), within(5_000L));
+    }
+
+    @Test
+    void templateThatAdvancesResetsItsBackOff() {
+        UUID id = UUID.randomUUID();
+        returnSchedule(id, LocalDateTime.now().minusHours(1));
+        queue.refresh(List.of(id));
+        queue.refresh(List.of(id));
+
+        returnSchedule(id, LocalDateTime.now().plusHours(1));
+        queue.refresh(List.of(id));
+        returnSchedule(id, LocalDateTime.now().minusHours(1));
+        queue.refresh(List.of(id));
+
+        assertThat(lastArmedDelay()).isCloseTo(Duration.ofMinutes(1).toMillis(), within(5_000L));
+    }
+
+    @Test
+    void templateNoLongerRecurringIsDroppedOnRefresh() {
+        UUID id = UUID.randomUUID();
+        queue.schedule(id, LocalDateTime.now().plusHours(1));
+        when(transactionRepository.findRecurringSchedulesByIdIn(anyCollection())).thenReturn(List.of());
+
+        queue.refresh(List.of(id));
+
+        assertThat(queue.size()).isZero();
+    }
+
+    private void returnSchedule(UUID id, LocalDateTime nextRecurringDate) {
+        RecurringSchedule schedule = new RecurringSchedule() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public LocalDateTime getNextRecurringDate() {
+                return nextRecurringDate;
+            }
+        };
+        when(transactionRepository.findRecurringSchedulesByIdIn(anyCollection())).thenReturn(List.of(schedule));
+    }
+
+    private void fire() {
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler, atLeastOnce()).schedule(task.capture(), any(Instant.class));
+        task.getValue().run();
+    }
+
+    private long lastArmedDelay() {
+        ArgumentCaptor<Instant> at = ArgumentCaptor.forClass(Instant.class);
+        verify(taskScheduler, atLeastOnce()).schedule(any(Runnable.class), at.capture());
+        return Duration.between(Instant.now(), at.getValue()).toMillis();
+    }
+}
@@ -0,0 +1,109 @@
+package com.spendsense.service.ai;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void rejectsCallsBeyondTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 10);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void growsAdditivelyWhileTheLimitIsUsed() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 10);
+
+        // Calls made while at least half the limit is in use each add 1/limit
+        for (int window = 0; window < 10; window++) {
+            int limit = limiter.limit();
+            for (int i = 0; i < limit; i++) {
+                limiter.tryAcquire();
+            }
+            for (int i = 0; i < limit; i++) {
+                limiter.onSuccess();
+            }
+        }
+
+        assertThat(limiter.limit()).isGreaterThan(2);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void doesNotGrowWhenMostlyIdle() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 16);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess();
+        }
+
+        assertThat(limiter.limit()).isEqualTo(8);
+    }
+
+    @Test
+    void halvesOnUpstreamPushBackButNeverBelowOne() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 16);
+
+        limiter.tryAcquire();
+        limiter.onDropped();
+        assertThat(limiter.limit()).isEqualTo(4);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.onDropped();
+        }
+        assertThat(limiter.limit()).isEqualTo(1);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void successesNeverShrinkTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 16);
+
+        // However long they took, successes only ever grow the limit
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 4; j++) {
+                limiter.tryAcquire();
+            }
+            for (int j = 0; j < 4; j++) {
+                limiter.onSuccess();
+            }
+        }
+
+        assertThat(limiter.limit()).isGreaterThan(4);
+    }
+
+    @Test
+    void ignoredOutcomesOnlyReleaseThePermit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(3, 10);
+
+        limiter.tryAcquire();
+        limiter.onIgnored();
+
+        assertThat(limiter.limit()).isEqualTo(3);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void neverExceedsTheBulkhead() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 5);
+        assertThat(limiter.limit()).isEqualTo(5);
+
+        for (int i = 0; i < 1000; i++) {
+            for (int j = 0; j < limiter.limit(); j++) {
+                limiter.tryAcquire();
+            }
+            while (limiter.inFlight() > 0) {
+                limiter.onSuccess();
+            }
+        }
+        assertThat(limiter.limit()).isEqualTo(5);
+    }
+}
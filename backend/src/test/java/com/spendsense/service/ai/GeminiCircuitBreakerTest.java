@@ -0,0 +1,97 @@
+package com.spendsense.service.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeminiCircuitBreakerTest {
+
+    @Test
+    void staysClosedUntilMinimumCallsAreRecorded() {
+        GeminiCircuitBreaker breaker = new GeminiCircuitBreaker(10, 5, 50, Duration.ofMinutes(1), 2);
+
+        for (int i = 0; i < 4; i++) {
+            breaker.tryAcquire();
+            breaker.onFailure();
+        }
+
+        assertThat(breaker.state()).isEqualTo(GeminiCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void opensAtTheFailureRateAndRefusesCalls() {
+        GeminiCircuitBreaker breaker = new GeminiCircuitBreaker(10, 4, 50, Duration.ofMinutes(1), 2);
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(GeminiCircuitBreaker.State.CLOSED);
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(GeminiCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void oldOutcomesSlideOutOfTheWindow() {
+        GeminiCircuitBreaker breaker = new GeminiCircuitBreaker(4, 4, 50, Duration.ofMinutes(1), 2);
+
+        breaker.onFailure();
+        for (int i = 0; i < 6; i++) {
+            breaker.onSuccess();
+        }
+        // Window now holds 4 successes; one more failure is 25%
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(GeminiCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenTrialsCloseTheCircuitWhenAllSucceed() {
+        GeminiCircuitBreaker breaker = openBreaker(2);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(GeminiCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+
+        assertThat(breaker.state()).isEqualTo(GeminiCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void halfOpenFailureReopensTheCircuit() {
+        GeminiCircuitBreaker breaker = openBreaker(2);
+
+        breaker.tryAcquire();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(GeminiCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void ignoredHalfOpenTrialGivesItsPermitBack() {
+        GeminiCircuitBreaker breaker = openBreaker(1);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+        breaker.onIgnored();
+
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    /** A breaker that has just opened, with a zero open duration so the next call is a trial. */
+    private static GeminiCircuitBreaker openBreaker(int halfOpenCalls) {
+        GeminiCircuitBreaker breaker = new GeminiCircuitBreaker(4, 2, 50, Duration.ZERO, halfOpenCalls);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(GeminiCircuitBreaker.State.OPEN);
+        return breaker;
+    }
+}
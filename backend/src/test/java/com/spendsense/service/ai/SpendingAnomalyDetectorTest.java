@@ -0,0 +1,150 @@
+package com.spendsense.service.ai;
+
+import com.spendsense.model.Transaction;
+import com.spendsense.model.enums.TransactionType;
+import com.spendsense.service.ai.SpendingAnomalyDetector.Anomaly;
+import com.spendsense.service.ai.SpendingAnomalyDetector.Kind;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpendingAnomalyDetectorTest {
+
+    private final SpendingAnomalyDetector detector = new SpendingAnomalyDetector();
+    private final LocalDateTime now = LocalDateTime.of(2026, 3, 1, 12, 0);
+
+    @Test
+    void steadyCategoryWithALargeWeekIsReportedAsSurge() {
+        List<Transaction> history = steadyGroceries();
+        history.add(expense("Groceries", "Warehouse club", 300, now.minusDays(1)));
+
+        List<Anomaly> findings = detector.detect(history, now);
+
+        assertThat(findings).anySatisfy(a -> {
+            assertThat(a.kind()).isEqualTo(Kind.CATEGORY_SURGE);
+            assertThat(a.message()).startsWith("Groceries");
+        });
+    }
+
+    @Test
+    void categoryWithNoBaselineIsReportedAsNewNotAsSurge() {
+        List<Transaction> history = steadyGroceries();
+        history.add(expense("Travel", "Airline", 500, now.minusDays(2)));
+
+        List<Anomaly> findings = detector.detect(history, now);
+
+        assertThat(findings).noneMatch(a -> a.kind() == Kind.CATEGORY_SURGE);
+        assertThat(findings).anySatisfy(a -> {
+            assertThat(a.kind()).isEqualTo(Kind.NEW_CATEGORY);
+            assertThat(a.message()).contains("Travel");
+        });
+    }
+
+    @Test
+    void newCategoryRanksBelowScoredFindings() {
+        List<Transaction> history = steadyGroceries();
+        history.add(expense("Groceries", "Warehouse club", 300, now.minusDays(1)));
+        history.add(expense("Travel", "Airline", 500, now.minusDays(2)));
+
+        List<Anomaly> findings = detector.detect(history, now);
+
+        assertThat(findings.getFirst().kind()).isNotEqualTo(Kind.NEW_CATEGORY);
+    }
+
+    @Test
+    void sparseBaselineIsNotScored() {
+        List<Transaction> history = steadyGroceries();
+        history.add(expense("Gifts", "Gift shop", 20, now.minusDays(5 * 7 + 3)));
+        history.add(expense("Gifts", "Flowers", 300, now.minusDays(1)));
+
+        List<Anomaly> findings = detector.detect(history, now);
+
+        assertThat(findings).noneMatch(a -> a.message().contains("Gifts"));
+    }
+
+    @Test
+    void shortHistoryReportsNoCategoryFindings() {
+        List<Transaction> history = new ArrayList<>();
+        history.add(expense("Groceries", "Supermarket", 100, now.minusDays(15)));
+        history.add(expense("Groceries", "Supermarket", 100, now.minusDays(8)));
+        history.add(expense("Travel", "Airline", 500, now.minusDays(2)));
+
+        List<Anomaly> findings = detector.detect(history, now);
+
+        assertThat(findings).noneMatch(a -> a.kind() == Kind.CATEGORY_SURGE || a.kind() == Kind.NEW_CATEGORY);
+    }
+
+    @Test
+    void chargeFarAboveTheMerchantsUsualIsReportedAsSpike() {
+        List<Transaction> history = steadyGroceries();
+        history.add(expense("Groceries", "Supermarket", 400, now.minusDays(1)));
+
+        List<Anomaly> findings = detector.detect(history, now);
+
+        assertThat(findings).anySatisfy(a -> {
+            assertThat(a.kind()).isEqualTo(Kind.MERCHANT_SPIKE);
+            assertThat(a.message()).startsWith("Supermarket charge of 400.00");
+        });
+    }
+
+    @Test
+    void chargeSlightlyAboveTheMerchantsUsualIsNotASpike() {
+        List<Transaction> history = steadyGroceries();
+        // Median 95, MAD floored to 4.75: z = 0.6745 · 20 / 4.75 ≈ 2.8, below 3.5
+        history.add(expense("Groceries", "Supermarket", 115, now.minusDays(1)));
+
+        List<Anomaly> findings = detector.detect(history, now);
+
+        assertThat(findings).noneMatch(a -> a.kind() == Kind.MERCHANT_SPIKE || a.kind() == Kind.CATEGORY_SPIKE);
+    }
+
+    @Test
+    void sameChargeTwiceWithin48HoursIsReportedAsDuplicate() {
+        List<Transaction> history = new ArrayList<>();
+        history.add(expense("Dining", "Coffee Roasters #12", 12.50, now.minusHours(30)));
+        history.add(expense("Dining", "COFFEE ROASTERS #7", 12.5, now.minusHours(6)));
+
+        List<Anomaly> findings = detector.detect(history, now);
+
+        assertThat(findings).anySatisfy(a -> {
+            assertThat(a.kind()).isEqualTo(Kind.DUPLICATE_CHARGE);
+            assertThat(a.message()).contains("about 24h later");
+        });
+    }
+
+    @Test
+    void sameChargeOutsideTheDuplicateWindowIsNotReported() {
+        List<Transaction> history = new ArrayList<>();
+        history.add(expense("Dining", "Coffee Roasters", 12.50, now.minusHours(80)));
+        history.add(expense("Dining", "Coffee Roasters", 12.50, now.minusHours(6)));
+
+        List<Anomaly> findings = detector.detect(history, now);
+
+        assertThat(findings).noneMatch(a -> a.kind() == Kind.DUPLICATE_CHARGE);
+    }
+
+    /** Nine weeks of groceries alternating between 95 and 105. */
+    private List<Transaction> steadyGroceries() {
+        List<Transaction> history = new ArrayList<>();
+        for (int week = 0; week <= 8; week++) {
+            history.add(expense("Groceries", "Supermarket", week % 2 == 0 ? 95 : 105,
+                    now.minusDays(week * 7L + 2)));
+        }
+        return history;
+    }
+
+    private static Transaction expense(String category, String description, double amount, LocalDateTime date) {
+        Transaction t = new Transaction();
+        t.setType(TransactionType.EXPENSE);
+        t.setCategory(category);
+        t.setDescription(description);
+        t.setAmount(BigDecimal.valueOf(amount));
+        t.setDate(date);
+        return t;
+    }
+}
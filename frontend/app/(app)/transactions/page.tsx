@@ -21,7 +21,7 @@ import { apiFetch } from "@/lib/api";
 import { formatCurrency, formatDate, formatDateTime, CATEGORIES, toBackendDate } from "@/lib/utils";
 import type {
   TransactionResponse, Page, AccountResponse, CreateTransactionRequest,
-  ReceiptScanResponse, RecurringInterval,
+  ReceiptScanResponse, ReceiptScanJobResponse, RecurringInterval,
 } from "@/types/api";
 
 // ─── Quick account creation schema (used inside TransactionDialog) ─────────────
@@ -711,15 +711,17 @@ function TransactionsInner() {
   async function handleScanReceipt(file: File): Promise<ReceiptScanResponse | null> {
     setScanning(true);
     try {
-      const token = await getToken();
       const fd = new FormData(); fd.append("file", file);
-      const res = await fetch(`${process.env.NEXT_PUBLIC_API_URL}/receipts/scan`, {
-        method: "POST", headers: { Authorization: `Bearer ${token}` }, body: fd,
-      });
-      if (!res.ok) throw new Error("Scan failed");
-      const data: ReceiptScanResponse = await res.json();
+      // 202 + job id; the scan itself runs in the background
+      let job = await apiFetch<ReceiptScanJobResponse>("/receipts/scan", getToken, { method: "POST", body: fd });
+      const deadline = Date.now() + 120_000;
+      while ((job.status === "PENDING" || job.status === "PROCESSING") && Date.now() < deadline) {
+        await new Promise(r => setTimeout(r, 1500));
+        job = await apiFetch<ReceiptScanJobResponse>(`/receipts/scan/jobs/${job.jobId}`, getToken);
+      }
+      if (job.status !== "COMPLETED" || !job.result) throw new Error(job.error ?? "Scan failed");
       toast.success("Receipt scanned — form pre-filled.");
-      return data;
+      return job.result;
     } catch { toast.error("Could not scan receipt."); return null; }
     finally { setScanning(false); }
   }
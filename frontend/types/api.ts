@@ -137,6 +137,15 @@ export interface ReceiptScanResponse {
   taxAmount: string;
   items: ReceiptItem[];
 }
+export type ReceiptScanStatus = "PENDING" | "PROCESSING" | "COMPLETED" | "FAILED";
+export interface ReceiptScanJobResponse {
+  jobId: string;
+  status: ReceiptScanStatus;
+  result: ReceiptScanResponse | null;
+  error: string | null;
+  createdAt: string;
+  completedAt: string | null;
+}
 
 // ─── Pagination ────────────────────────────────────────────────────────────────
 export interface Page<T> {